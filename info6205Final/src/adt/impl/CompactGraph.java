@@ -0,0 +1,363 @@
+package adt.impl;
+
+import adt.MyMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-only graph frozen into compressed sparse row (CSR) arrays.
+ * Vertices are renumbered to dense indices 0..n-1 so traversals work on int arrays
+ * instead of hashing vertex objects. When built with reordering enabled, indices are
+ * assigned in Reverse Cuthill-McKee order, which keeps each neighbourhood in a narrow
+ * index band so that the offsets/targets arrays are walked mostly sequentially.
+ * @param <V> Type of vertices
+ */
+public class CompactGraph<V> {
+    // Index -> vertex
+    private final Object[] vertices;
+    // Vertex -> index
+    private final MyMap<V, Integer> indexMap;
+    // Neighbours of vertex i are targets[offsets[i] .. offsets[i + 1])
+    private final int[] offsets;
+    private final int[] targets;
+
+    private CompactGraph(Object[] vertices, MyMap<V, Integer> indexMap, int[] offsets, int[] targets) {
+        this.vertices = vertices;
+        this.indexMap = indexMap;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Freeze an adjacency map into a compact graph
+     * @param adjacency Vertex -> neighbours
+     * @param reorder Whether to renumber vertices in Reverse Cuthill-McKee order
+     * @return The frozen graph
+     */
+    public static <V> CompactGraph<V> fromAdjacency(MyMap<V, ? extends Collection<V>> adjacency, boolean reorder) {
+        List<V> keys = adjacency.keySet();
+        int n = keys.size();
+
+        // 1) Assign indices in map order
+        MyMap<V, Integer> indexMap = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            indexMap.put(keys.get(i), i);
+        }
+
+        // 2) Build CSR arrays in map order
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + adjacency.get(keys.get(i)).size();
+        }
+        int[] targets = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int pos = offsets[i];
+            for (V neighbour : adjacency.get(keys.get(i))) {
+                Integer j = indexMap.get(neighbour);
+                if (j != null) {
+                    targets[pos++] = j;
+                }
+            }
+            // Neighbours without an adjacency entry are marked missing and dropped below
+            while (pos < offsets[i + 1]) {
+                targets[pos++] = -1;
+            }
+        }
+        if (containsMissing(targets)) {
+            int[][] compacted = dropMissing(n, offsets, targets);
+            offsets = compacted[0];
+            targets = compacted[1];
+        }
+
+        Object[] vertices = keys.toArray();
+        if (!reorder) {
+            sortNeighbourLists(n, offsets, targets);
+            return new CompactGraph<>(vertices, indexMap, offsets, targets);
+        }
+
+        // 3) Renumber: order[k] = old index that receives new index k
+        int[] order = reverseCuthillMcKee(n, offsets, targets);
+        int[] newIndex = new int[n];
+        for (int k = 0; k < n; k++) {
+            newIndex[order[k]] = k;
+        }
+
+        Object[] newVertices = new Object[n];
+        int[] newOffsets = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            int old = order[k];
+            newVertices[k] = vertices[old];
+            newOffsets[k + 1] = newOffsets[k] + (offsets[old + 1] - offsets[old]);
+        }
+        int[] newTargets = new int[targets.length];
+        for (int k = 0; k < n; k++) {
+            int old = order[k];
+            int pos = newOffsets[k];
+            for (int e = offsets[old]; e < offsets[old + 1]; e++) {
+                newTargets[pos++] = newIndex[targets[e]];
+            }
+        }
+        sortNeighbourLists(n, newOffsets, newTargets);
+
+        MyMap<V, Integer> newIndexMap = new HashMap<>(n * 2);
+        for (int k = 0; k < n; k++) {
+            @SuppressWarnings("unchecked")
+            V v = (V) newVertices[k];
+            newIndexMap.put(v, k);
+        }
+        return new CompactGraph<>(newVertices, newIndexMap, newOffsets, newTargets);
+    }
+
+    /**
+     * Compute a Reverse Cuthill-McKee ordering.
+     * Each connected component is traversed breadth-first from a minimum-degree vertex,
+     * enqueueing neighbours by ascending degree; the final sequence is reversed.
+     * @return order[k] = vertex that should receive index k
+     */
+    static int[] reverseCuthillMcKee(int n, int[] offsets, int[] targets) {
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+
+        // Vertices sorted by degree, used to pick the start of each component
+        Integer[] byDegree = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byDegree[i] = i;
+        }
+        Arrays.sort(byDegree, (a, b) -> Integer.compare(offsets[a + 1] - offsets[a], offsets[b + 1] - offsets[b]));
+
+        int head = 0;
+        int tail = 0;
+        int[] scratch = new int[16];
+        for (Integer start : byDegree) {
+            if (visited[start]) continue;
+            visited[start] = true;
+            order[tail++] = start;
+
+            while (head < tail) {
+                int v = order[head++];
+                int count = 0;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        if (count == scratch.length) {
+                            scratch = Arrays.copyOf(scratch, count * 2);
+                        }
+                        scratch[count++] = w;
+                    }
+                }
+                sortByDegree(scratch, count, offsets);
+                System.arraycopy(scratch, 0, order, tail, count);
+                tail += count;
+            }
+        }
+
+        // Reverse
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Sort the first count entries of a by vertex degree.
+     * Neighbour lists are usually short, so insertion sort is used below a small cutoff.
+     */
+    private static void sortByDegree(int[] a, int count, int[] offsets) {
+        if (count > 32) {
+            long[] keyed = new long[count];
+            for (int i = 0; i < count; i++) {
+                keyed[i] = ((long) (offsets[a[i] + 1] - offsets[a[i]]) << 32) | a[i];
+            }
+            Arrays.sort(keyed);
+            for (int i = 0; i < count; i++) {
+                a[i] = (int) keyed[i];
+            }
+            return;
+        }
+        for (int i = 1; i < count; i++) {
+            int v = a[i];
+            int d = offsets[v + 1] - offsets[v];
+            int j = i - 1;
+            while (j >= 0 && offsets[a[j] + 1] - offsets[a[j]] > d) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void sortNeighbourLists(int n, int[] offsets, int[] targets) {
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        }
+    }
+
+    private static boolean containsMissing(int[] targets) {
+        for (int t : targets) {
+            if (t < 0) return true;
+        }
+        return false;
+    }
+
+    private static int[][] dropMissing(int n, int[] offsets, int[] targets) {
+        int[] newOffsets = new int[n + 1];
+        int[] newTargets = new int[targets.length];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                if (targets[e] >= 0) {
+                    newTargets[pos++] = targets[e];
+                }
+            }
+            newOffsets[i + 1] = pos;
+        }
+        return new int[][] { newOffsets, Arrays.copyOf(newTargets, pos) };
+    }
+
+    // ===========================================
+    // =============== ACCESSORS =================
+    // ===========================================
+
+    /**
+     * Get the number of vertices
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Get the number of directed edges (an undirected friendship counts twice)
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Get the dense index of a vertex
+     * @param vertex vertex
+     * @return the index, or -1 if the vertex is not in the graph
+     */
+    public int indexOf(V vertex) {
+        Integer index = indexMap.get(vertex);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get the vertex stored at a dense index
+     * @param index index
+     * @return the vertex
+     */
+    @SuppressWarnings("unchecked")
+    public V vertexAt(int index) {
+        return (V) vertices[index];
+    }
+
+    /**
+     * Get the degree of a vertex
+     * @param index index of the vertex
+     * @return the number of neighbours
+     */
+    public int degree(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Get the i-th neighbour of a vertex; neighbours are sorted by index
+     * @param index index of the vertex
+     * @param i position in the neighbour list, 0 <= i < degree(index)
+     * @return the index of the neighbour
+     */
+    public int neighbour(int index, int i) {
+        return targets[offsets[index] + i];
+    }
+
+    /**
+     * Bandwidth of the adjacency matrix under the current numbering,
+     * i.e. the largest |i - j| over all edges. Lower is more cache friendly.
+     * @return the bandwidth
+     */
+    public int bandwidth() {
+        int max = 0;
+        for (int i = 0; i < vertices.length; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                max = Math.max(max, Math.abs(targets[e] - i));
+            }
+        }
+        return max;
+    }
+
+    // ===========================================
+    // ============== ALGORITHMS =================
+    // ===========================================
+
+    /**
+     * Breadth-first search from a vertex
+     * @param source index of the source vertex
+     * @return hop distance to every vertex, -1 if unreachable
+     */
+    public int[] bfsDistances(int source) {
+        int n = vertices.length;
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            int next = dist[v] + 1;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                if (dist[w] < 0) {
+                    dist[w] = next;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Vertices exactly two hops away (friends of friends that are not already friends)
+     * @param source index of the source vertex
+     * @return the vertices at distance two
+     */
+    public List<V> verticesAtDistanceTwo(int source) {
+        int start = offsets[source];
+        int end = offsets[source + 1];
+
+        // Collect all two-hop candidates, then sort and dedupe them
+        int total = 0;
+        for (int e = start; e < end; e++) {
+            total += degree(targets[e]);
+        }
+        int[] candidates = new int[total];
+        int count = 0;
+        for (int e = start; e < end; e++) {
+            int friend = targets[e];
+            System.arraycopy(targets, offsets[friend], candidates, count, degree(friend));
+            count += degree(friend);
+        }
+        Arrays.sort(candidates, 0, count);
+
+        // Neighbour lists are sorted, so direct friends can be excluded by binary search
+        List<V> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int candidate = candidates[i];
+            if (i > 0 && candidates[i - 1] == candidate) continue;
+            if (candidate == source) continue;
+            if (Arrays.binarySearch(targets, start, end, candidate) >= 0) continue;
+            result.add(vertexAt(candidate));
+        }
+        return result;
+    }
+}
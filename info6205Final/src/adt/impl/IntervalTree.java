@@ -0,0 +1,245 @@
+package adt.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Augmented interval tree over half-open intervals [start, end).
+ * An AVL tree ordered by (start, tieBreaker) where every node also stores the largest end
+ * in its subtree, so a subtree whose maxEnd is at or before a query's start can be skipped.
+ * Overlap checks run in O(log n) and listing the k overlapping intervals in O(log n + k).
+ * @param <T> Type of values attached to intervals
+ */
+public class IntervalTree<T> {
+    private final Comparator<? super T> tieBreaker;
+    private Node<T> root;
+    private int size;
+
+    /**
+     * Creates an empty interval tree
+     * @param tieBreaker Orders values that share the same start; must be consistent with equals
+     */
+    public IntervalTree(Comparator<? super T> tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    /**
+     * Insert an interval
+     * @param start inclusive start
+     * @param end exclusive end
+     * @param value value attached to the interval
+     */
+    public void insert(long start, long end, T value) {
+        if (end < start) {
+            throw new IllegalArgumentException("Interval end is before start");
+        }
+        root = insert(root, new Node<>(start, end, value));
+        size++;
+    }
+
+    /**
+     * Remove an interval previously inserted with the same start and value
+     * @param start start the interval was inserted with
+     * @param value value attached to the interval
+     * @return true if it was found and removed
+     */
+    public boolean remove(long start, T value) {
+        int before = size;
+        root = remove(root, start, value);
+        return size < before;
+    }
+
+    /**
+     * Check if any stored interval overlaps [start, end)
+     * @param start inclusive start
+     * @param end exclusive end
+     * @return true if there is at least one overlap
+     */
+    public boolean overlapsAny(long start, long end) {
+        Node<T> node = root;
+        while (node != null) {
+            if (node.start < end && node.end > start) {
+                return true;
+            }
+            // If the left subtree reaches past start, any overlap on the right would imply
+            // one on the left too (CLRS 14.3), so the left side is the only place to look
+            if (node.left != null && node.left.maxEnd > start) {
+                node = node.left;
+            } else if (node.start < end) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * List every stored interval overlapping [start, end), ordered by start
+     * @param start inclusive start
+     * @param end exclusive end
+     * @return the overlapping values
+     */
+    public List<T> findOverlapping(long start, long end) {
+        List<T> result = new ArrayList<>();
+        collectOverlapping(root, start, end, result);
+        return result;
+    }
+
+    /**
+     * Get the number of stored intervals
+     * @return the number of intervals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the tree is empty
+     * @return Returns true if the tree is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all intervals
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    private void collectOverlapping(Node<T> node, long start, long end, List<T> result) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collectOverlapping(node.left, start, end, result);
+        if (node.start < end) {
+            if (node.end > start) {
+                result.add(node.value);
+            }
+            collectOverlapping(node.right, start, end, result);
+        }
+    }
+
+    private int compare(long start, T value, Node<T> node) {
+        int c = Long.compare(start, node.start);
+        return c != 0 ? c : tieBreaker.compare(value, node.value);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.value, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> remove(Node<T> node, long start, T value) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(start, value, node);
+        if (c < 0) {
+            node.left = remove(node.left, start, value);
+        } else if (c > 0) {
+            node.right = remove(node.right, start, value);
+        } else {
+            size--;
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            // Replace with the in-order successor
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.right = removeMin(node.right);
+            successor.left = node.left;
+            successor.right = node.right;
+            node = successor;
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> removeMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private Node<T> rebalance(Node<T> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <T> void update(Node<T> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long max = node.end;
+        if (node.left != null && node.left.maxEnd > max) max = node.left.maxEnd;
+        if (node.right != null && node.right.maxEnd > max) max = node.right.maxEnd;
+        node.maxEnd = max;
+    }
+
+    /**
+     * Tree node
+     */
+    private static class Node<T> {
+        private final long start;
+        private final long end;
+        private final T value;
+        private long maxEnd;
+        private int height = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        Node(long start, long end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+}
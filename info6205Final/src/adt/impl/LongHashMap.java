@@ -0,0 +1,238 @@
+package adt.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map from primitive long keys to values, using open addressing with linear probing.
+ * Keys and values live in two parallel arrays, so there is no boxed key and no entry
+ * object per mapping. Deletion shifts later entries of the probe run back instead of
+ * leaving tombstones. Null values are not allowed (a null slot marks an empty one).
+ * @param <V> Type of values
+ */
+public class LongHashMap<V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    // Resize when more than 3/4 full
+    private static final int LOAD_NUMERATOR = 3;
+    private static final int LOAD_DENOMINATOR = 4;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    /**
+     * Constructs an empty map with default capacity
+     */
+    public LongHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map sized for the given number of entries
+     * @param expectedSize Expected number of entries
+     */
+    public LongHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        int capacity = DEFAULT_INITIAL_CAPACITY;
+        while ((long) capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Get the value for a key
+     * @param key key
+     * @return the value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Put a value under a key
+     * @param key key
+     * @param value value, must not be null
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value for a key
+     * @param key key
+     * @return the removed value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                shiftBack(i, mask);
+                size--;
+                return old;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if the map contains the key
+     * @param key key
+     * @return Returns true if it contains, otherwise returns false
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the number of entries
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map is empty
+     * @return Returns true if it is empty, otherwise returns false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Get all keys, in table order
+     * @return the keys
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get all values, in the same order as keys()
+     * @return a list containing all values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) {
+                result.add((V) value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Close the gap at index i by moving back entries whose probe run passes through it
+     */
+    private void shiftBack(int i, int mask) {
+        int gap = i;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            // Entry j may move to gap only if gap lies cyclically within [home, j)
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * Grow the table once so it holds expectedSize entries without further resizing
+     * @param expectedSize Expected number of entries
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = keys.length;
+        while ((long) capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR < expectedSize) {
+            capacity <<= 1;
+        }
+        if (capacity > keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void resize() {
+        rehash(keys.length * 2);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i], mask);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        threshold = capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR;
+    }
+
+    /**
+     * Home slot of a key: Fibonacci hashing spreads sequential ids across the table
+     */
+    private static int slot(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
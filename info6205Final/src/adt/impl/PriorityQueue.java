@@ -70,6 +70,36 @@ public class PriorityQueue<T> implements MyPriorityQueue<T> {
         size++;
     }
     
+    /**
+     * Add many elements at once. The array grows at most once; when the batch is at least
+     * as large as the queue, the elements are appended and the heap is rebuilt bottom-up in
+     * O(n) instead of sifting each one up.
+     * @param items Elements to add, none null
+     */
+    public void addAll(List<? extends T> items) {
+        int count = items.size();
+        for (T item : items) {
+            if (item == null) {
+                throw new NullPointerException("Cannot add null element to priority queue");
+            }
+        }
+        if (size + count > heap.length) {
+            heap = Arrays.copyOf(heap, size + count);
+        }
+        
+        if (count < size) {
+            for (T item : items) {
+                siftUp(size, item);
+                size++;
+            }
+            return;
+        }
+        for (T item : items) {
+            heap[size++] = item;
+        }
+        heapify();
+    }
+    
     @Override
     public T remove() {
         if (isEmpty()) {
@@ -246,17 +276,22 @@ public class PriorityQueue<T> implements MyPriorityQueue<T> {
             heap = newHeap;
             size = newSize;
             
-            // Rebuild the heap (starting from the last non-leaf node and moving upward)
-            for (int i = (size >>> 1) - 1; i >= 0; i--) {
-                @SuppressWarnings("unchecked")
-                T element = (T) heap[i];
-                siftDown(i, element);
-            }
+            heapify();
         }
         
         return removed;
     }
     
+    /**
+     * Rebuild the heap, starting from the last non-leaf node and moving upward
+     */
+    @SuppressWarnings("unchecked")
+    private void heapify() {
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, (T) heap[i]);
+        }
+    }
+    
     /**
      * Expand array capacity
      */
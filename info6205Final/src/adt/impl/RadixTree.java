@@ -0,0 +1,345 @@
+package adt.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compressed prefix tree (radix tree) from String keys to values.
+ * Each edge carries a whole substring, so the tree has at most one internal node per
+ * branching point. Children are kept sorted by first character, and empty branches are
+ * pruned on removal, so every subtree holds at least one value: a top-N prefix query
+ * costs O(prefix length + N) node visits regardless of how many keys are stored.
+ * A key can hold several values.
+ * @param <V> Type of values
+ */
+public class RadixTree<V> {
+    private final Node<V> root = new Node<>("");
+    private int size;
+
+    /**
+     * Add a value under a key
+     * @param key key
+     * @param value value
+     */
+    public void put(String key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<V> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int pos = node.findChild(key.charAt(i));
+            if (pos < 0) {
+                Node<V> leaf = new Node<>(key.substring(i));
+                node.insertChild(-pos - 1, leaf);
+                node = leaf;
+                i = key.length();
+                break;
+            }
+            Node<V> child = node.children.get(pos);
+            int common = commonPrefix(child.edge, key, i);
+            if (common < child.edge.length()) {
+                // Split the edge at the divergence point
+                Node<V> mid = new Node<>(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                mid.children = new ArrayList<>(2);
+                mid.children.add(child);
+                node.children.set(pos, mid);
+                child = mid;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Remove one value stored under a key
+     * @param key key
+     * @param value value (compared with equals)
+     * @return true if the value was found and removed
+     */
+    public boolean remove(String key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        boolean removed = remove(root, key, 0, value);
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    private boolean remove(Node<V> node, String key, int i, V value) {
+        if (i == key.length()) {
+            return node.values != null && node.values.remove(value);
+        }
+        int pos = node.findChild(key.charAt(i));
+        if (pos < 0) {
+            return false;
+        }
+        Node<V> child = node.children.get(pos);
+        if (!key.startsWith(child.edge, i)) {
+            return false;
+        }
+        boolean removed = remove(child, key, i + child.edge.length(), value);
+        if (removed) {
+            prune(node, pos);
+        }
+        return removed;
+    }
+
+    /**
+     * Drop or merge the child at pos if it no longer carries values on its own
+     */
+    private void prune(Node<V> parent, int pos) {
+        Node<V> child = parent.children.get(pos);
+        if (child.values != null && !child.values.isEmpty()) {
+            return;
+        }
+        child.values = null;
+        int childCount = child.children == null ? 0 : child.children.size();
+        if (childCount == 0) {
+            parent.children.remove(pos);
+        } else if (childCount == 1) {
+            Node<V> grandChild = child.children.get(0);
+            grandChild.edge = child.edge + grandChild.edge;
+            parent.children.set(pos, grandChild);
+        }
+    }
+
+    /**
+     * Get the values stored under exactly this key
+     * @param key key
+     * @return the values under the key, or an empty list
+     */
+    public List<V> get(String key) {
+        Node<V> node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int pos = node.findChild(key.charAt(i));
+            if (pos < 0) {
+                return new ArrayList<>();
+            }
+            Node<V> child = node.children.get(pos);
+            if (!key.startsWith(child.edge, i)) {
+                return new ArrayList<>();
+            }
+            node = child;
+            i += child.edge.length();
+        }
+        return node.values == null ? new ArrayList<>() : new ArrayList<>(node.values);
+    }
+
+    /**
+     * Collect up to limit values whose key starts with prefix, in key order
+     * @param prefix prefix
+     * @param limit maximum number of values to return
+     * @return the matching values
+     */
+    public List<V> prefixSearch(String prefix, int limit) {
+        List<V> result = new ArrayList<>(Math.min(limit, 64));
+        if (limit <= 0) {
+            return result;
+        }
+        Node<V> node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int pos = node.findChild(prefix.charAt(i));
+            if (pos < 0) {
+                return result;
+            }
+            Node<V> child = node.children.get(pos);
+            int remaining = prefix.length() - i;
+            if (child.edge.length() >= remaining) {
+                // Prefix ends inside (or at the end of) this edge
+                if (!child.edge.startsWith(prefix.substring(i))) {
+                    return result;
+                }
+                node = child;
+                break;
+            }
+            if (!prefix.startsWith(child.edge, i)) {
+                return result;
+            }
+            node = child;
+            i += child.edge.length();
+        }
+        collect(node, result, limit);
+        return result;
+    }
+
+    /**
+     * Collect values whose key is within maxDistance edits (Levenshtein) of query.
+     * Walks the tree carrying one row of the edit-distance matrix per character, which
+     * simulates a Levenshtein automaton over the tree; a branch is abandoned as soon as
+     * every entry of its row exceeds maxDistance, so only a thin slice of the tree is visited.
+     * @param query the key to match approximately
+     * @param maxDistance maximum number of insertions, deletions and substitutions
+     * @param limit maximum number of values to return
+     * @return the matching values, closest first (ties in key order)
+     */
+    public List<V> fuzzySearch(String query, int maxDistance, int limit) {
+        List<List<V>> byDistance = new ArrayList<>(maxDistance + 1);
+        for (int d = 0; d <= maxDistance; d++) {
+            byDistance.add(new ArrayList<>());
+        }
+        // rows.get(i) is the matrix row after i key characters; reused across branches
+        List<int[]> rows = new ArrayList<>();
+        int[] firstRow = new int[query.length() + 1];
+        for (int j = 0; j <= query.length(); j++) {
+            firstRow[j] = Math.min(j, maxDistance + 1);
+        }
+        rows.add(firstRow);
+        fuzzyVisit(root, 0, query, rows, maxDistance, byDistance);
+
+        List<V> result = new ArrayList<>();
+        for (List<V> bucket : byDistance) {
+            for (V v : bucket) {
+                if (result.size() >= limit) return result;
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    private void fuzzyVisit(Node<V> node, int depth, String query, List<int[]> rows,
+                            int maxDistance, List<List<V>> byDistance) {
+        int m = query.length();
+        int cap = maxDistance + 1;
+        // Advance one row per character of this node's edge; only the diagonal band
+        // |i - j| <= maxDistance can stay within range, everything else is capped
+        for (int c = 0; c < node.edge.length(); c++) {
+            char ch = node.edge.charAt(c);
+            int[] row = rows.get(depth);
+            depth++;
+            if (rows.size() == depth) {
+                rows.add(new int[m + 1]);
+            }
+            int[] next = rows.get(depth);
+            int lo = Math.max(1, depth - maxDistance);
+            int hi = Math.min(m, depth + maxDistance);
+            next[0] = Math.min(depth, cap);
+            next[lo - 1] = lo == 1 ? next[0] : cap;
+            int rowMin = next[lo - 1];
+            for (int j = lo; j <= hi; j++) {
+                int cost = query.charAt(j - 1) == ch ? 0 : 1;
+                int v = Math.min(Math.min(next[j - 1] + 1, row[j] + 1), row[j - 1] + cost);
+                next[j] = Math.min(v, cap);
+                rowMin = Math.min(rowMin, next[j]);
+            }
+            if (hi < m) {
+                next[hi + 1] = cap;
+            }
+            if (rowMin > maxDistance) {
+                return;
+            }
+        }
+        int distance = Math.abs(depth - m) > maxDistance ? cap : rows.get(depth)[m];
+        if (distance <= maxDistance && node.values != null) {
+            byDistance.get(distance).addAll(node.values);
+        }
+        if (node.children != null) {
+            for (Node<V> child : node.children) {
+                fuzzyVisit(child, depth, query, rows, maxDistance, byDistance);
+            }
+        }
+    }
+
+    private void collect(Node<V> node, List<V> result, int limit) {
+        if (node.values != null) {
+            for (V v : node.values) {
+                if (result.size() >= limit) return;
+                result.add(v);
+            }
+        }
+        if (node.children != null) {
+            for (Node<V> child : node.children) {
+                if (result.size() >= limit) return;
+                collect(child, result, limit);
+            }
+        }
+    }
+
+    /**
+     * Get the number of stored values
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the tree is empty
+     * @return Returns true if the tree is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all keys and values
+     */
+    public void clear() {
+        root.children = null;
+        root.values = null;
+        size = 0;
+    }
+
+    private static int commonPrefix(String edge, String key, int from) {
+        int max = Math.min(edge.length(), key.length() - from);
+        int n = 0;
+        while (n < max && edge.charAt(n) == key.charAt(from + n)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Tree node; children sorted by the first char of their edge
+     */
+    private static class Node<V> {
+        private String edge;
+        private List<Node<V>> children;
+        private List<V> values;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        /**
+         * Binary search children by first character
+         * @return index of the child, or (-(insertion point) - 1)
+         */
+        int findChild(char c) {
+            if (children == null) {
+                return -1;
+            }
+            int lo = 0;
+            int hi = children.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char m = children.get(mid).edge.charAt(0);
+                if (m < c) {
+                    lo = mid + 1;
+                } else if (m > c) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        void insertChild(int index, Node<V> child) {
+            if (children == null) {
+                children = new ArrayList<>(2);
+            }
+            children.add(index, child);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package adt.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scalable Bloom filter over strings (Almeida et al.).
+ * Answers "definitely absent" or "possibly present". When the current layer reaches its
+ * capacity a new, larger layer with a tighter error bound is appended, so the overall
+ * false-positive rate stays below the configured target however many items are added.
+ */
+public class ScalableBloomFilter {
+    // Each new layer holds GROWTH times as many items as the previous one
+    private static final int GROWTH = 2;
+    // Each new layer's error bound is TIGHTENING times the previous one
+    private static final double TIGHTENING = 0.5;
+
+    private final int initialCapacity;
+    private final double targetFalsePositiveRate;
+    private final List<Layer> layers = new ArrayList<>();
+    private long size;
+
+    /**
+     * Creates a filter
+     * @param initialCapacity Expected number of items before the first layer fills
+     * @param falsePositiveRate Target overall false-positive probability, 0 < p < 1
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Illegal false positive rate: " + falsePositiveRate);
+        }
+        this.initialCapacity = initialCapacity;
+        this.targetFalsePositiveRate = falsePositiveRate;
+        clear();
+    }
+
+    /**
+     * Add an item
+     * @param item The item to add
+     */
+    public void add(String item) {
+        long h1 = hash1(item);
+        long h2 = hash2(item);
+        Layer last = layers.get(layers.size() - 1);
+        if (last.count >= last.capacity) {
+            last = new Layer(last.capacity * GROWTH, last.errorRate * TIGHTENING);
+            layers.add(last);
+        }
+        last.add(h1, h2);
+        size++;
+    }
+
+    /**
+     * Check whether an item might have been added
+     * @param item The item to test
+     * @return false if the item was definitely never added, true if it possibly was
+     */
+    public boolean mightContain(String item) {
+        long h1 = hash1(item);
+        long h2 = hash2(item);
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            if (layers.get(i).mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all items and shrink back to a single layer
+     */
+    public void clear() {
+        layers.clear();
+        // Geometric series: p0 / (1 - r) = target
+        layers.add(new Layer(initialCapacity, targetFalsePositiveRate * (1 - TIGHTENING)));
+        size = 0;
+    }
+
+    /**
+     * Get the number of items added
+     * @return the number of items
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get the number of layers currently allocated
+     * @return the number of layers
+     */
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    /**
+     * Estimate the current false-positive probability from each layer's fill ratio
+     * @return the estimated probability that mightContain returns true for an absent item
+     */
+    public double expectedFalsePositiveRate() {
+        double allMiss = 1.0;
+        for (Layer layer : layers) {
+            allMiss *= 1.0 - layer.currentFalsePositiveRate();
+        }
+        return 1.0 - allMiss;
+    }
+
+    /**
+     * First hash: FNV-1a over the UTF-16 chars, 64-bit
+     */
+    private static long hash1(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Second hash: String.hashCode mixed to 64 bits, forced odd so double hashing cycles all bits
+     */
+    private static long hash2(String s) {
+        return mix(s.hashCode() * 0x9E3779B97F4A7C15L) | 1L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * One fixed-size Bloom filter layer
+     */
+    private static class Layer {
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private final double errorRate;
+        private int count;
+
+        Layer(int capacity, double errorRate) {
+            this.capacity = capacity;
+            this.errorRate = errorRate;
+            double ln2 = Math.log(2);
+            long m = (long) Math.ceil(-capacity * Math.log(errorRate) / (ln2 * ln2));
+            m = Math.max(64, (m + 63) & ~63L);
+            this.bitCount = m;
+            this.bits = new long[(int) (m >>> 6)];
+            this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * ln2));
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double currentFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashCount * count / bitCount), hashCount);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package adt.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ordered index implemented as a skip list.
+ * Entries are sorted by a long key and then by a tie-breaker on the value, so several
+ * values may share a key. Insert, remove and seeking to a key take O(log n) expected time;
+ * walking k consecutive entries from there is O(k), which makes range scans and
+ * cursor-style pagination O(log n + k). The head's forward array starts small and
+ * doubles when a taller node arrives, so the many small lists (one per user calendar)
+ * do not each carry MAX_LEVEL pointers.
+ * @param <T> Type of values
+ */
+public class SkipList<T> {
+    private static final int MAX_LEVEL = 32;
+    private static final int INITIAL_HEAD_LEVEL = 4;
+
+    private final Comparator<? super T> tieBreaker;
+    private Node<T> head = new Node<>(Long.MIN_VALUE, null, INITIAL_HEAD_LEVEL);
+    private int level = 1;
+    private int size;
+
+    /**
+     * Creates an empty skip list
+     * @param tieBreaker Orders values that share the same key; must be consistent with equals
+     */
+    public SkipList(Comparator<? super T> tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    /**
+     * Insert a value under a key
+     * @param key sort key
+     * @param value value
+     */
+    public void insert(long key, T value) {
+        int newLevel = randomLevel();
+        if (newLevel > head.next.length) {
+            growHead(newLevel);
+        }
+        Node<T>[] update = newNodeArray(Math.max(level, newLevel));
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && compare(node.next[i], key, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                update[i] = head;
+            }
+            level = newLevel;
+        }
+        Node<T> added = new Node<>(key, value, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+        }
+        size++;
+    }
+
+    /**
+     * Remove a value previously inserted under the same key
+     * @param key sort key
+     * @param value value
+     * @return true if the entry was found and removed
+     */
+    public boolean remove(long key, T value) {
+        Node<T>[] update = newNodeArray(level);
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && compare(node.next[i], key, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+        Node<T> target = node.next[0];
+        if (target == null || compare(target, key, value) != 0) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] != target) break;
+            update[i].next[i] = target.next[i];
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Values with from <= key < to, in order
+     * @param from inclusive lower bound
+     * @param to exclusive upper bound
+     * @param limit maximum number of values to return
+     * @return the values
+     */
+    public List<T> range(long from, long to, int limit) {
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && node.next[i].key < from) {
+                node = node.next[i];
+            }
+        }
+        return walk(node.next[0], to, limit);
+    }
+
+    /**
+     * Values strictly after (key, value) with key < to, in order.
+     * Used to resume a range scan from the last entry of the previous page.
+     * @param key key of the last entry already returned
+     * @param value value of the last entry already returned
+     * @param to exclusive upper bound
+     * @param limit maximum number of values to return
+     * @return the values
+     */
+    public List<T> rangeAfter(long key, T value, long to, int limit) {
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && compare(node.next[i], key, value) <= 0) {
+                node = node.next[i];
+            }
+        }
+        return walk(node.next[0], to, limit);
+    }
+
+    /**
+     * Get the number of entries
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the list is empty
+     * @return Returns true if the list is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        head = new Node<>(Long.MIN_VALUE, null, INITIAL_HEAD_LEVEL);
+        level = 1;
+        size = 0;
+    }
+
+    private List<T> walk(Node<T> node, long to, int limit) {
+        List<T> result = new ArrayList<>();
+        while (node != null && node.key < to && result.size() < limit) {
+            result.add(node.value);
+            node = node.next[0];
+        }
+        return result;
+    }
+
+    private int compare(Node<T> node, long key, T value) {
+        int c = Long.compare(node.key, key);
+        return c != 0 ? c : tieBreaker.compare(node.value, value);
+    }
+
+    /**
+     * Level for a new node: each extra level with probability 1/4
+     */
+    private static int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+            lvl++;
+        }
+        return lvl;
+    }
+
+    /**
+     * Replace the head with one of at least the given level, keeping its links
+     */
+    private void growHead(int minLevel) {
+        int length = Math.min(MAX_LEVEL, Math.max(minLevel, head.next.length * 2));
+        Node<T> grown = new Node<>(Long.MIN_VALUE, null, length);
+        System.arraycopy(head.next, 0, grown.next, 0, head.next.length);
+        head = grown;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newNodeArray(int length) {
+        return (Node<T>[]) new Node<?>[length];
+    }
+
+    /**
+     * Skip list node
+     */
+    private static class Node<T> {
+        private final long key;
+        private final T value;
+        private final Node<T>[] next;
+
+        Node(long key, T value, int level) {
+            this.key = key;
+            this.value = value;
+            this.next = newNodeArray(level);
+        }
+    }
+}
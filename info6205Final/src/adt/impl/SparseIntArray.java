@@ -0,0 +1,232 @@
+package adt.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sparse map from int keys to values, tuned for clustered keys such as epoch days.
+ * Small maps are two sorted parallel arrays searched by binary search, so a user with a
+ * handful of busy days costs a few dozen bytes instead of a hash table. Once the map
+ * grows past SMALL_LIMIT entries it switches to fixed-size pages addressed directly by
+ * (key >> PAGE_SHIFT) - firstPage, so a lookup is two array indexings with no hashing.
+ * @param <V> Type of values
+ */
+public class SparseIntArray<V> {
+    // Maximum entries kept in the sorted-array representation
+    private static final int SMALL_LIMIT = 8;
+    // 64 keys per page (about two months of days)
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Small representation: sorted keys and matching values, null once paged
+    private int[] keys = new int[2];
+    private Object[] values = new Object[2];
+
+    // Paged representation: pages[i] covers keys of page number firstPage + i
+    private Object[][] pages;
+    private int[] pageCounts;
+    private int firstPage;
+
+    private int size;
+
+    /**
+     * Get the value for a key
+     * @param key key
+     * @return the value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (pages == null) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            return pos >= 0 ? (V) values[pos] : null;
+        }
+        int p = (key >> PAGE_SHIFT) - firstPage;
+        if (p < 0 || p >= pages.length || pages[p] == null) {
+            return null;
+        }
+        return (V) pages[p][key & PAGE_MASK];
+    }
+
+    /**
+     * Put a value under a key
+     * @param key key
+     * @param value value, must not be null
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        if (pages == null) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos >= 0) {
+                V old = (V) values[pos];
+                values[pos] = value;
+                return old;
+            }
+            if (size < SMALL_LIMIT) {
+                pos = -pos - 1;
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, Math.min(SMALL_LIMIT, size * 2));
+                    values = Arrays.copyOf(values, keys.length);
+                }
+                System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+                System.arraycopy(values, pos, values, pos + 1, size - pos);
+                keys[pos] = key;
+                values[pos] = value;
+                size++;
+                return null;
+            }
+            toPaged();
+        }
+        int page = key >> PAGE_SHIFT;
+        ensurePage(page);
+        int p = page - firstPage;
+        if (pages[p] == null) {
+            pages[p] = new Object[PAGE_SIZE];
+        }
+        V old = (V) pages[p][key & PAGE_MASK];
+        pages[p][key & PAGE_MASK] = value;
+        if (old == null) {
+            pageCounts[p]++;
+            size++;
+        }
+        return old;
+    }
+
+    /**
+     * Remove the value for a key
+     * @param key key
+     * @return the removed value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (pages == null) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos < 0) {
+                return null;
+            }
+            V old = (V) values[pos];
+            System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+            System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+            size--;
+            values[size] = null;
+            return old;
+        }
+        int p = (key >> PAGE_SHIFT) - firstPage;
+        if (p < 0 || p >= pages.length || pages[p] == null) {
+            return null;
+        }
+        V old = (V) pages[p][key & PAGE_MASK];
+        if (old != null) {
+            pages[p][key & PAGE_MASK] = null;
+            size--;
+            if (--pageCounts[p] == 0) {
+                pages[p] = null;
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Check if the map contains the key
+     * @param key key
+     * @return Returns true if it contains, otherwise returns false
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the number of entries
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map is empty
+     * @return Returns true if it is empty, otherwise returns false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries and return to the small representation
+     */
+    public void clear() {
+        keys = new int[2];
+        values = new Object[2];
+        pages = null;
+        pageCounts = null;
+        size = 0;
+    }
+
+    /**
+     * Get all keys in ascending order
+     * @return the keys
+     */
+    public int[] keys() {
+        if (pages == null) {
+            return Arrays.copyOf(keys, size);
+        }
+        int[] result = new int[size];
+        int n = 0;
+        for (int p = 0; p < pages.length; p++) {
+            if (pages[p] == null) continue;
+            int base = (firstPage + p) << PAGE_SHIFT;
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                if (pages[p][i] != null) {
+                    result[n++] = base + i;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void toPaged() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldSize = size;
+        keys = null;
+        values = null;
+        firstPage = oldKeys[0] >> PAGE_SHIFT;
+        pages = new Object[1][];
+        pageCounts = new int[1];
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            int page = oldKeys[i] >> PAGE_SHIFT;
+            ensurePage(page);
+            int p = page - firstPage;
+            if (pages[p] == null) {
+                pages[p] = new Object[PAGE_SIZE];
+            }
+            pages[p][oldKeys[i] & PAGE_MASK] = oldValues[i];
+            pageCounts[p]++;
+            size++;
+        }
+    }
+
+    /**
+     * Grow the page directory so that it covers the given page number
+     */
+    private void ensurePage(int page) {
+        if (page < firstPage) {
+            int shift = firstPage - page;
+            Object[][] newPages = new Object[pages.length + shift][];
+            int[] newCounts = new int[pages.length + shift];
+            System.arraycopy(pages, 0, newPages, shift, pages.length);
+            System.arraycopy(pageCounts, 0, newCounts, shift, pages.length);
+            pages = newPages;
+            pageCounts = newCounts;
+            firstPage = page;
+        } else if (page - firstPage >= pages.length) {
+            int newLength = page - firstPage + 1;
+            pages = Arrays.copyOf(pages, newLength);
+            pageCounts = Arrays.copyOf(pageCounts, newLength);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package adt.impl;
+
+import adt.MyMap;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding for strings: every distinct string gets a dense int code, and
+ * decoding a code always returns the same canonical String instance.
+ * Codes are handed out from 0 in insertion order and are never reused.
+ */
+public class StringDictionary {
+    // code -> canonical string
+    private String[] strings = new String[16];
+    private int size;
+
+    // string -> code
+    private final MyMap<String, Integer> codes = new HashMap<>();
+
+    /**
+     * Get the code for a string, assigning a new one if it has not been seen
+     * @param s The string
+     * @return Its code
+     */
+    public int encode(String s) {
+        if (s == null) {
+            throw new IllegalArgumentException("String cannot be null");
+        }
+        Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+        }
+        strings[size] = s;
+        codes.put(s, size);
+        return size++;
+    }
+
+    /**
+     * Get the code for a string without assigning one
+     * @param s The string
+     * @return Its code, or -1 if it has not been encoded
+     */
+    public int codeOf(String s) {
+        Integer code = s == null ? null : codes.get(s);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Get the canonical string for a code
+     * @param code The code
+     * @return The string
+     */
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            throw new IllegalArgumentException("Unknown code: " + code);
+        }
+        return strings[code];
+    }
+
+    /**
+     * Get the canonical instance equal to a string, adding it if necessary
+     * @param s The string
+     * @return The shared instance
+     */
+    public String intern(String s) {
+        int code = encode(s);
+        return strings[code];
+    }
+
+    /**
+     * Get the number of distinct strings
+     * @return the number of distinct strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all strings; previously returned codes become invalid
+     */
+    public void clear() {
+        strings = new String[16];
+        size = 0;
+        codes.clear();
+    }
+}
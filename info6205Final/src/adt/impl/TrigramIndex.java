@@ -0,0 +1,287 @@
+package adt.impl;
+
+import adt.MyMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inverted trigram index for case-insensitive substring search.
+ * Every indexed item gets a dense int slot; each trigram of its lower-cased text maps to a
+ * posting list of slots stored as a sorted int array. A query intersects the posting lists
+ * of its own trigrams and only verifies the surviving candidates with String.contains.
+ * Slots are handed out in increasing order, so adding an item is an append to each list.
+ * Removing an item only clears its slot; its posting entries stay behind as tombstones
+ * (skipped by search) until dead slots outnumber live ones, when every slot is renumbered
+ * densely and the posting lists are filtered in one pass. Removal is O(1) and the index
+ * stays within twice the size of its live items.
+ * @param <T> Type of indexed items (matched by identity/equals)
+ */
+public class TrigramIndex<T> {
+    // slot -> item, null once removed
+    private Object[] items = new Object[16];
+    // slot -> lower-cased text
+    private String[] texts = new String[16];
+    private int nextSlot;
+    private int liveCount;
+    // Slots cleared by remove whose posting entries are still in the lists
+    private int deadCount;
+
+    // Dead slots tolerated whatever the live count, so small indexes do not compact constantly
+    private static final int MIN_COMPACT = 64;
+
+    // item -> slot
+    private final MyMap<T, Integer> slotOf = new HashMap<>();
+    // packed trigram -> posting list
+    private final MyMap<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Index an item under the given text
+     * @param item The item
+     * @param text The text to search in
+     */
+    public void add(T item, String text) {
+        if (slotOf.containsKey(item)) {
+            remove(item);
+        }
+        if (nextSlot == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            texts = Arrays.copyOf(texts, texts.length * 2);
+        }
+        int slot = nextSlot++;
+        String lower = text.toLowerCase();
+        items[slot] = item;
+        texts[slot] = lower;
+        slotOf.put(item, slot);
+        liveCount++;
+
+        for (long gram : distinctTrigrams(lower)) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                list = new Postings();
+                postings.put(gram, list);
+            }
+            list.append(slot);
+        }
+    }
+
+    /**
+     * Remove an item from the index
+     * @param item The item
+     * @return true if the item was indexed
+     */
+    public boolean remove(T item) {
+        Integer slot = slotOf.remove(item);
+        if (slot == null) {
+            return false;
+        }
+        items[slot] = null;
+        texts[slot] = null;
+        liveCount--;
+        deadCount++;
+        if (deadCount >= MIN_COMPACT && deadCount > liveCount) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Renumber the live slots densely, in order, and drop dead slots from every posting
+     * list. The renumbering is monotonic, so the lists stay sorted.
+     */
+    @SuppressWarnings("unchecked")
+    private void compact() {
+        int[] newSlot = new int[nextSlot];
+        int live = 0;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (items[slot] == null) {
+                newSlot[slot] = -1;
+                continue;
+            }
+            newSlot[slot] = live;
+            items[live] = items[slot];
+            texts[live] = texts[slot];
+            slotOf.put((T) items[live], live);
+            live++;
+        }
+        Arrays.fill(items, live, nextSlot, null);
+        Arrays.fill(texts, live, nextSlot, null);
+        nextSlot = live;
+        deadCount = 0;
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, live)) * 2);
+        if (capacity < items.length) {
+            items = Arrays.copyOf(items, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+
+        for (Long gram : postings.keySet()) {
+            Postings list = postings.get(gram);
+            list.renumber(newSlot);
+            if (list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Find all items whose text contains the query, ignoring case
+     * @param query The substring to look for
+     * @return matching items in insertion order
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> search(String query) {
+        String lower = query.toLowerCase();
+        List<T> result = new ArrayList<>();
+
+        // Queries shorter than a trigram cannot use the index
+        if (lower.length() < 3) {
+            for (int slot = 0; slot < nextSlot; slot++) {
+                if (texts[slot] != null && texts[slot].contains(lower)) {
+                    result.add((T) items[slot]);
+                }
+            }
+            return result;
+        }
+
+        long[] grams = distinctTrigrams(lower);
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return result;
+            }
+        }
+        // Start from the rarest trigram so the candidate set shrinks fastest
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] candidates = Arrays.copyOf(lists[0].slots, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(candidates, count, lists[i]);
+        }
+
+        // Trigram hits are necessary but not sufficient; verify the substring, which also
+        // skips the tombstones of removed items
+        for (int i = 0; i < count; i++) {
+            int slot = candidates[i];
+            if (texts[slot] != null && texts[slot].contains(lower)) {
+                result.add((T) items[slot]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of indexed items
+     * @return the number of items
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Remove all items
+     */
+    public void clear() {
+        items = new Object[16];
+        texts = new String[16];
+        nextSlot = 0;
+        liveCount = 0;
+        deadCount = 0;
+        slotOf.clear();
+        postings.clear();
+    }
+
+    /**
+     * Keep only the candidates that also appear in list; result is written in place
+     * @return the new candidate count
+     */
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int[] other = list.slots;
+        int otherSize = list.size;
+        int out = 0;
+        if (otherSize > count * 16) {
+            // Much longer list: binary search each candidate
+            int from = 0;
+            for (int i = 0; i < count; i++) {
+                int pos = Arrays.binarySearch(other, from, otherSize, candidates[i]);
+                if (pos >= 0) {
+                    candidates[out++] = candidates[i];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            return out;
+        }
+        // Similar sizes: linear merge
+        int j = 0;
+        for (int i = 0; i < count && j < otherSize; ) {
+            if (candidates[i] < other[j]) {
+                i++;
+            } else if (candidates[i] > other[j]) {
+                j++;
+            } else {
+                candidates[out++] = candidates[i];
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Pack every distinct 3-char window of s into a long (16 bits per char)
+     */
+    private static long[] distinctTrigrams(String s) {
+        int n = s.length() - 2;
+        if (n <= 0) {
+            return new long[0];
+        }
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++) {
+            grams[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 1;
+        for (int i = 1; i < n; i++) {
+            if (grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Growable sorted int array of slots
+     */
+    private static class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void append(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        /**
+         * Map every slot through newSlot, dropping those mapped to -1
+         */
+        void renumber(int[] newSlot) {
+            int out = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = newSlot[slots[i]];
+                if (slot >= 0) {
+                    slots[out++] = slot;
+                }
+            }
+            size = out;
+            if (size < slots.length / 4 && slots.length > 4) {
+                slots = Arrays.copyOf(slots, Math.max(4, size * 2));
+            }
+        }
+    }
+}
@@ -4,17 +4,42 @@ import controller.MainController;
 
 
 import controller.NavigationController;
+import java.io.IOException;
+import java.nio.file.Paths;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import logging.Logger;
 import model.DataStore;
+import persistence.DurableStore;
+import persistence.FsyncPolicy;
+import persistence.LogCompactor;
 import view.LoginView;
 
 public class Main extends Application {
+	private static final Logger LOG = Logger.get(Main.class);
+
+	// Write-ahead log directory and how often it is fsynced
+	private static final String DATA_DIR = "data";
+	private static final long FSYNC_INTERVAL_MS = 100;
+	// Compact once the log is 4x the live data and at least 16 MB, checking every minute
+	private static final long COMPACT_CHECK_MS = 60_000;
+	private static final double MAX_LOG_TO_LIVE_RATIO = 4.0;
+	private static final long MIN_COMPACT_LOG_BYTES = 16L << 20;
+
+	private DurableStore durableStore;
+	private LogCompactor logCompactor;
+
 	@Override
 	public void start(Stage primaryStage) {
-	    // 1. First create data and controllers
+	    // 1. First create data (recovered from the log) and controllers
 	    DataStore dataStore = new DataStore();
+	    try {
+	        durableStore = DurableStore.open(dataStore, Paths.get(DATA_DIR), FsyncPolicy.INTERVAL, FSYNC_INTERVAL_MS);
+	        logCompactor = new LogCompactor(durableStore, COMPACT_CHECK_MS, MAX_LOG_TO_LIVE_RATIO, MIN_COMPACT_LOG_BYTES);
+	    } catch (IOException e) {
+	        LOG.warn("Could not open {}, changes will not be saved: {}", DATA_DIR, e.getMessage());
+	    }
 	    NavigationController navController = new NavigationController();
 	    MainController mainController = new MainController(dataStore, navController);
 
@@ -37,6 +62,16 @@ public class Main extends Application {
 	}
 
 
+	@Override
+	public void stop() throws IOException {
+	    if (logCompactor != null) {
+	        logCompactor.close();
+	    }
+	    if (durableStore != null) {
+	        durableStore.close();
+	    }
+	}
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,147 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import logging.Level;
+import logging.Logger;
+import model.DataStore;
+import model.Event;
+import model.Mutation;
+import model.PriorityLevel;
+import model.User;
+
+/**
+ * Per-event cost of DataStore.applyBatch against calling addEvent/removeEvent once per
+ * mutation, on a store already holding eventsPerUser events per user. Three batch shapes:
+ *  - import: new events for random owners, up to two invitees each
+ *  - series: one owner's recurring event, several per day over a few weeks
+ *  - mixed: half new events, a quarter replacing existing ids, a quarter removals
+ * Each run starts from a fresh copy of the same store, collected before timing so the
+ * seeding garbage is not charged to either path; the best of several runs is kept.
+ * The store's logging is limited to warnings while measuring, so neither path pays for it.
+ *
+ * Usage: java benchmark.BatchMutationBenchmark [users] [eventsPerUser] [batchSize]
+ */
+public class BatchMutationBenchmark {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 6, 8, 0);
+    private static final int DAYS = 28;
+    private static final int RUNS = 7;
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int eventsPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        Logger.setLevel(Level.WARN);
+        System.out.printf("%d users, %d events already stored, batches of %d%n", users,
+                users * eventsPerUser, batchSize);
+        System.out.printf("%-8s %14s %14s %8s%n", "batch", "single ns/op", "batch ns/op", "speedup");
+        for (String shape : new String[] { "import", "series", "mixed" }) {
+            double single = Double.MAX_VALUE;
+            double batched = Double.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                DataStore dataStore = seed(users, eventsPerUser);
+                List<Mutation> batch = batch(shape, users, eventsPerUser, batchSize, run);
+                System.gc();
+                long start = System.nanoTime();
+                applyOneByOne(dataStore, batch);
+                single = Math.min(single, (System.nanoTime() - start) / (double) batch.size());
+
+                dataStore = seed(users, eventsPerUser);
+                batch = batch(shape, users, eventsPerUser, batchSize, run);
+                System.gc();
+                start = System.nanoTime();
+                dataStore.applyBatch(batch);
+                batched = Math.min(batched, (System.nanoTime() - start) / (double) batch.size());
+            }
+            System.out.printf("%-8s %14.0f %14.0f %7.1fx%n", shape, single, batched, single / batched);
+        }
+    }
+
+    private static void applyOneByOne(DataStore dataStore, List<Mutation> batch) {
+        for (Mutation m : batch) {
+            if (m.getType() == Mutation.Type.ADD_EVENT) {
+                dataStore.addEvent(m.getUserId(), m.getEvent());
+            } else {
+                dataStore.removeEvent(m.getUserId(), m.getEventId());
+            }
+        }
+    }
+
+    private static DataStore seed(int users, int eventsPerUser) {
+        DataStore dataStore = new DataStore();
+        for (int i = 0; i < users; i++) {
+            dataStore.addUser(new User("id" + i, "user" + i, "pw"));
+        }
+        Random random = new Random(7);
+        List<String> owners = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < users * eventsPerUser; i++) {
+            owners.add(ownerOfSeed(i, users));
+            events.add(newEvent("seed" + i, BASE.plusDays(random.nextInt(DAYS)), random, users));
+        }
+        dataStore.addEventsBulk(owners, events);
+        return dataStore;
+    }
+
+    /**
+     * Mutations are rebuilt for every run, since adding an event interns its strings.
+     */
+    private static List<Mutation> batch(String shape, int users, int eventsPerUser, int batchSize, int run) {
+        Random random = new Random(31L * run + shape.hashCode());
+        int seeded = users * eventsPerUser;
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        String seriesOwner = "id" + random.nextInt(users);
+        for (int i = 0; i < batchSize; i++) {
+            String eventId = "new" + i;
+            switch (shape) {
+                case "import":
+                    batch.add(Mutation.addEvent("id" + random.nextInt(users),
+                            newEvent(eventId, BASE.plusDays(random.nextInt(DAYS)), random, users)));
+                    break;
+                case "series":
+                    LocalDateTime day = BASE.plusDays(i % DAYS);
+                    batch.add(Mutation.addEvent(seriesOwner, newEvent(eventId, day, random, 0)));
+                    break;
+                default:
+                    int kind = random.nextInt(4);
+                    if (kind < 2) {
+                        batch.add(Mutation.addEvent("id" + random.nextInt(users),
+                                newEvent(eventId, BASE.plusDays(random.nextInt(DAYS)), random, users)));
+                    } else {
+                        int seed = random.nextInt(seeded);
+                        if (kind == 2) {
+                            batch.add(Mutation.addEvent(ownerOfSeed(seed, users),
+                                    newEvent("seed" + seed, BASE.plusDays(random.nextInt(DAYS)), random, users)));
+                        } else {
+                            batch.add(Mutation.removeEvent(ownerOfSeed(seed, users), "seed" + seed));
+                        }
+                    }
+            }
+        }
+        return batch;
+    }
+
+    private static String ownerOfSeed(int seed, int users) {
+        return "id" + seed % users;
+    }
+
+    /**
+     * An event on the given day at a random quarter hour, with up to two invitees when
+     * users > 0.
+     */
+    private static Event newEvent(String eventId, LocalDateTime day, Random random, int users) {
+        LocalDateTime start = day.plusMinutes(15L * random.nextInt(40));
+        List<String> participants = new ArrayList<>();
+        for (int i = users > 0 ? random.nextInt(3) : 0; i > 0; i--) {
+            participants.add("user" + random.nextInt(users));
+        }
+        return new Event(eventId, "Meeting " + random.nextInt(20), start,
+                start.plusMinutes(15 * (1 + random.nextInt(4))), participants,
+                PriorityLevel.values()[random.nextInt(3)]);
+    }
+}
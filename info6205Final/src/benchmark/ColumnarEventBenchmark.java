@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import model.ColumnarEventStore;
+import model.Event;
+import model.PriorityLevel;
+
+/**
+ * Compares a List of Event objects with ColumnarEventStore: heap bytes per event
+ * and full-scan throughput for an overlap count over every event.
+ *
+ * Usage: java benchmark.ColumnarEventBenchmark [events]
+ */
+public class ColumnarEventBenchmark {
+
+    private static final String[] TITLES = {
+        "Standup", "1:1", "Sprint Planning", "Retro", "Lunch", "Design Review",
+        "Gym", "Dentist", "Team Sync", "Interview", "Office Hours", "Demo"
+    };
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(7);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        long before = usedHeap();
+        List<Event> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            LocalDateTime start = base.plusMinutes(15L * random.nextInt(365 * 96));
+            List<String> participants = new ArrayList<>();
+            int count = random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                participants.add("user" + random.nextInt(10_000));
+            }
+            events.add(new Event(UUID.randomUUID().toString(),
+                    new String(TITLES[random.nextInt(TITLES.length)]),
+                    start, start.plusMinutes(30 + 15 * random.nextInt(4)),
+                    participants, PriorityLevel.values()[random.nextInt(3)]));
+        }
+        long objectBytes = usedHeap() - before;
+
+        ColumnarEventStore store = new ColumnarEventStore();
+        for (Event e : events) {
+            store.add(e);
+        }
+
+        LocalDateTime from = base.plusDays(100);
+        LocalDateTime to = base.plusDays(130);
+        int rounds = 20;
+        // Warm up
+        scanObjects(events, from, to);
+        store.countOverlapping(from, to);
+
+        long start = System.nanoTime();
+        int objectHits = 0;
+        for (int r = 0; r < rounds; r++) {
+            objectHits = scanObjects(events, from, to);
+        }
+        long objectNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int columnHits = 0;
+        for (int r = 0; r < rounds; r++) {
+            columnHits = store.countOverlapping(from, to);
+        }
+        long columnNs = System.nanoTime() - start;
+
+        int[] high = new int[1];
+        start = System.nanoTime();
+        store.forEach(e -> {
+            if (e.getPriority() == PriorityLevel.HIGH) high[0]++;
+        });
+        long viewNs = System.nanoTime() - start;
+
+        // Keep only what the store references (ids) and measure again
+        events = null;
+        long columnBytes = usedHeap() - before;
+
+        System.out.printf("events: %d, distinct titles %d, distinct participants %d%n",
+                store.size(), store.distinctTitles(), store.distinctParticipants());
+        System.out.printf("objects:  %d bytes/event%n", objectBytes / n);
+        System.out.printf("columnar: %d bytes/event (%d in primitive columns)%n",
+                columnBytes / n, store.columnBytes() / n);
+        System.out.printf("overlap scan, objects:  %.1f M events/s (%d hits)%n",
+                (double) n * rounds * 1e3 / objectNs, objectHits);
+        System.out.printf("overlap scan, columnar: %.1f M events/s (%d hits)%n",
+                (double) n * rounds * 1e3 / columnNs, columnHits);
+        System.out.printf("flyweight view scan:    %.1f M events/s (%d high)%n",
+                n * 1e3 / viewNs, high[0]);
+    }
+
+    private static int scanObjects(List<Event> events, LocalDateTime from, LocalDateTime to) {
+        int count = 0;
+        for (Event e : events) {
+            if (e.getStartTime().isBefore(to) && e.getEndTime().isAfter(from)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,133 @@
+package benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import logging.Level;
+import logging.Logger;
+import model.DataStore;
+import model.Event;
+import model.PriorityLevel;
+import model.User;
+
+/**
+ * Throughput of one shared DataStore at 1, 4, 16 and 64 threads, each thread working on
+ * random users: day queries only, 90% day queries / 10% addEvent + removeEvent, and
+ * half writes. Events have up to two invitees, so writes also lock other users' stripes.
+ * The store's logging is limited to warnings while measuring.
+ *
+ * Usage: java benchmark.ConcurrencyBenchmark [users] [eventsPerUser] [millisPerRun]
+ */
+public class ConcurrencyBenchmark {
+
+    private static final int[] THREADS = { 1, 4, 16, 64 };
+    private static final int[] WRITE_PERCENT = { 0, 10, 50 };
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 6, 8, 0);
+    private static final int DAYS = 28;
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int eventsPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+
+        Logger.setLevel(Level.WARN);
+        DataStore dataStore = new DataStore();
+        for (int i = 0; i < users; i++) {
+            dataStore.addUser(new User("id" + i, "user" + i, "pw"));
+        }
+        Random random = new Random(5);
+        List<String> owners = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < users * eventsPerUser; i++) {
+            owners.add("id" + random.nextInt(users));
+            events.add(newEvent("seed" + i, random, users));
+        }
+        dataStore.addEventsBulk(owners, events);
+
+        System.out.printf("%d users, %d events, %d available processors%n", users, events.size(),
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %10s %10s %10s%n", "threads", "reads", "10% write", "50% write");
+        for (int threads : THREADS) {
+            StringBuilder row = new StringBuilder(String.format("%-8d", threads));
+            for (int writePercent : WRITE_PERCENT) {
+                // Short warm-up run, then the measured one
+                run(dataStore, users, threads, writePercent, millis / 4);
+                double opsPerSecond = run(dataStore, users, threads, writePercent, millis);
+                row.append(String.format(" %8.0fk/s", opsPerSecond / 1000));
+            }
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * @return operations per second over all threads
+     */
+    private static double run(DataStore dataStore, int users, int threads, int writePercent, long millis)
+            throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed * 31L + writePercent);
+                List<String> added = new ArrayList<>();
+                long done = 0;
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    String userId = "id" + random.nextInt(users);
+                    if (random.nextInt(100) >= writePercent) {
+                        dataStore.getUserEventsByDay(userId, LocalDate.from(BASE).plusDays(random.nextInt(DAYS)));
+                    } else if (added.isEmpty() || random.nextBoolean()) {
+                        Event event = newEvent(dataStore.newId(), random, users);
+                        dataStore.addEvent(userId, event);
+                        added.add(userId);
+                        added.add(event.getEventId());
+                    } else {
+                        int last = added.size() - 2;
+                        dataStore.removeEvent(added.get(last), added.get(last + 1));
+                        added.remove(last + 1);
+                        added.remove(last);
+                    }
+                    done++;
+                }
+                operations.addAndGet(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.get() * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static Event newEvent(String eventId, Random random, int users) {
+        LocalDateTime start = BASE.plusDays(random.nextInt(DAYS)).plusMinutes(15L * random.nextInt(40));
+        List<String> participants = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            participants.add("user" + random.nextInt(users));
+        }
+        return new Event(eventId, "Meeting " + random.nextInt(20), start,
+                start.plusMinutes(15 * (1 + random.nextInt(4))), participants,
+                PriorityLevel.values()[random.nextInt(3)]);
+    }
+}
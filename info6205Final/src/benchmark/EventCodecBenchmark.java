@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import model.Event;
+import model.IdGenerator;
+import model.PriorityLevel;
+import model.SnowflakeIdGenerator;
+import persistence.BinaryWriter;
+import persistence.CompactEventCodec;
+
+/**
+ * Size and speed of CompactEventCodec against a field-by-field binary record (the
+ * write-ahead log's event encoding) and a CSV line per event, on generated events with
+ * snowflake ids, a dozen titles and 0-4 participants from a pool of users.
+ *
+ * Usage: java benchmark.EventCodecBenchmark [events] [rounds]
+ */
+public class EventCodecBenchmark {
+
+    private static final String[] TITLES = {
+        "Standup", "1:1", "Lunch", "Team Sync", "Sprint Planning", "Retro", "Design Review",
+        "Interview", "All Hands", "Customer Call", "Focus Time", "Code Review"
+    };
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<Event> events = generate(n, new Random(11));
+
+        long recordBytes = 0;
+        long csvBytes = 0;
+        BinaryWriter record = new BinaryWriter(256);
+        for (Event e : events) {
+            record.reset();
+            writeRecord(record, e);
+            recordBytes += record.size();
+            csvBytes += toCsv(e).getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        byte[] block = null;
+        List<Event> decoded = null;
+        long bestEncode = Long.MAX_VALUE;
+        long bestDecode = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            block = CompactEventCodec.encode(events);
+            bestEncode = Math.min(bestEncode, System.nanoTime() - start);
+            start = System.nanoTime();
+            decoded = CompactEventCodec.decode(block);
+            bestDecode = Math.min(bestDecode, System.nanoTime() - start);
+        }
+        verify(events, decoded);
+
+        System.out.printf("%d events%n", n);
+        System.out.printf("compact: %6.1f bytes/event%n", (double) block.length / n);
+        System.out.printf("record:  %6.1f bytes/event (%.1fx)%n", (double) recordBytes / n, (double) recordBytes / block.length);
+        System.out.printf("csv:     %6.1f bytes/event (%.1fx)%n", (double) csvBytes / n, (double) csvBytes / block.length);
+        System.out.printf("encode:  %.2f M events/s, %.0f MB/s%n", n * 1e3 / bestEncode,
+                block.length * 1e9 / bestEncode / (1 << 20));
+        System.out.printf("decode:  %.2f M events/s, %.0f MB/s%n", n * 1e3 / bestDecode,
+                block.length * 1e9 / bestDecode / (1 << 20));
+    }
+
+    private static List<Event> generate(int n, Random random) {
+        IdGenerator ids = new SnowflakeIdGenerator();
+        String[] users = new String[2000];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user" + i;
+        }
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Event> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            LocalDateTime start = base.plusMinutes(15L * random.nextInt(365 * 96));
+            List<String> participants = new ArrayList<>();
+            for (int j = random.nextInt(5); j > 0; j--) {
+                participants.add(users[random.nextInt(users.length)]);
+            }
+            events.add(new Event(ids.nextIdString(), TITLES[random.nextInt(TITLES.length)], start,
+                    start.plusMinutes(15 * (1 + random.nextInt(8))), participants,
+                    PriorityLevel.values()[random.nextInt(3)]));
+        }
+        return events;
+    }
+
+    // Same fields and encodings as the write-ahead log's event records
+    private static void writeRecord(BinaryWriter out, Event e) {
+        out.putString(e.getEventId());
+        out.putString(e.getTitle());
+        out.putDateTime(e.getStartTime());
+        out.putDateTime(e.getEndTime());
+        out.putVarInt(e.getParticipants().size() + 1);
+        for (String name : e.getParticipants()) {
+            out.putString(name);
+        }
+        out.putByte(e.getPriority().ordinal());
+    }
+
+    private static String toCsv(Event e) {
+        return e.getEventId() + "," + e.getTitle() + "," + e.getStartTime() + "," + e.getEndTime()
+                + "," + String.join(";", e.getParticipants()) + "," + e.getPriority() + "\n";
+    }
+
+    private static void verify(List<Event> original, List<Event> decoded) {
+        if (original.size() != decoded.size()) {
+            throw new IllegalStateException("Decoded " + decoded.size() + " of " + original.size() + " events");
+        }
+        Map<String, Event> byId = new HashMap<>();
+        for (Event e : decoded) {
+            byId.put(e.getEventId(), e);
+        }
+        for (Event a : original) {
+            Event b = byId.get(a.getEventId());
+            if (b == null || !a.getTitle().equals(b.getTitle())
+                    || !a.getStartTime().equals(b.getStartTime()) || !a.getEndTime().equals(b.getEndTime())
+                    || !Objects.equals(a.getParticipants(), b.getParticipants())
+                    || a.getPriority() != b.getPriority()) {
+                throw new IllegalStateException("Round trip mismatch at " + a.getEventId());
+            }
+        }
+    }
+}
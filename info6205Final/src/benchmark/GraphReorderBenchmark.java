@@ -0,0 +1,101 @@
+package benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import adt.MyMap;
+import adt.impl.CompactGraph;
+import adt.impl.HashMap;
+
+/**
+ * Compares BFS traversal on the frozen friend graph with and without
+ * Reverse Cuthill-McKee renumbering.
+ *
+ * The synthetic graph has community structure (most friends live in the same
+ * cluster of ~64 users) but user ids are shuffled, like UUIDs, so the
+ * insertion/hash order scatters each neighbourhood across memory.
+ *
+ * Usage: java benchmark.GraphReorderBenchmark [users] [avgDegree]
+ */
+public class GraphReorderBenchmark {
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int avgDegree = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int clusterSize = 64;
+        Random random = new Random(42);
+
+        // Shuffled ids: id[i] is the key stored for logical user i
+        int[] id = new int[users];
+        for (int i = 0; i < users; i++) {
+            id[i] = i;
+        }
+        for (int i = users - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = id[i];
+            id[i] = id[j];
+            id[j] = tmp;
+        }
+
+        MyMap<Integer, Set<Integer>> adjacency = new HashMap<>(users * 2);
+        for (int i = 0; i < users; i++) {
+            adjacency.put(id[i], new HashSet<>());
+        }
+        for (int i = 0; i < users; i++) {
+            int clusterStart = (i / clusterSize) * clusterSize;
+            for (int k = 0; k < avgDegree / 2; k++) {
+                int j;
+                if (random.nextInt(10) < 9) {
+                    j = Math.min(users - 1, clusterStart + random.nextInt(clusterSize));
+                } else {
+                    j = random.nextInt(users);
+                }
+                if (j == i) continue;
+                adjacency.get(id[i]).add(id[j]);
+                adjacency.get(id[j]).add(id[i]);
+            }
+        }
+
+        long t0 = System.nanoTime();
+        CompactGraph<Integer> plain = CompactGraph.fromAdjacency(adjacency, false);
+        long t1 = System.nanoTime();
+        CompactGraph<Integer> reordered = CompactGraph.fromAdjacency(adjacency, true);
+        long t2 = System.nanoTime();
+
+        System.out.printf("users=%d edges=%d%n", plain.getVertexCount(), plain.getEdgeCount());
+        System.out.printf("freeze (hash order): %d ms, bandwidth=%d%n", (t1 - t0) / 1_000_000, plain.bandwidth());
+        System.out.printf("freeze (RCM order):  %d ms, bandwidth=%d%n", (t2 - t1) / 1_000_000, reordered.bandwidth());
+
+        int[] sources = new int[8];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = id[random.nextInt(users)];
+        }
+
+        // Warm up both layouts before measuring
+        for (int round = 0; round < 3; round++) {
+            traverse(plain, sources);
+            traverse(reordered, sources);
+        }
+        long plainNs = traverse(plain, sources);
+        long reorderedNs = traverse(reordered, sources);
+
+        System.out.printf("BFS x%d (hash order): %d ms%n", sources.length, plainNs / 1_000_000);
+        System.out.printf("BFS x%d (RCM order):  %d ms%n", sources.length, reorderedNs / 1_000_000);
+        System.out.printf("speedup: %.2fx%n", (double) plainNs / reorderedNs);
+    }
+
+    private static long traverse(CompactGraph<Integer> graph, int[] sources) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int source : sources) {
+            int[] dist = graph.bfsDistances(graph.indexOf(source));
+            checksum += dist[dist.length - 1];
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,70 @@
+package benchmark;
+
+import java.util.Random;
+
+import model.DataStore;
+import model.User;
+
+/**
+ * Measures login lookup throughput (DataStore.findUserByUsername plus the
+ * password check done by MainController.login) against the old linear scan
+ * over userMap.values().
+ *
+ * Usage: java benchmark.LoginBenchmark [users] [logins]
+ */
+public class LoginBenchmark {
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int logins = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Random random = new Random(7);
+
+        DataStore dataStore = new DataStore();
+        for (int i = 0; i < users; i++) {
+            dataStore.addUser(new User("id" + i, "user" + i, "pw" + i));
+        }
+
+        String[] names = new String[logins];
+        for (int i = 0; i < logins; i++) {
+            names[i] = "user" + random.nextInt(users);
+        }
+
+        // Warm up
+        runIndexed(dataStore, names);
+        long start = System.nanoTime();
+        int ok = runIndexed(dataStore, names);
+        long indexedNs = System.nanoTime() - start;
+        System.out.printf("indexed: %d logins in %d ms (%.0f logins/s, %d ok)%n",
+                logins, indexedNs / 1_000_000, logins * 1e9 / indexedNs, ok);
+
+        // The linear scan is far slower, so only sample a few lookups
+        int samples = 20;
+        start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            linearFind(dataStore, names[i]);
+        }
+        long linearNs = System.nanoTime() - start;
+        System.out.printf("linear:  %d logins in %d ms (%.0f logins/s)%n",
+                samples, linearNs / 1_000_000, samples * 1e9 / linearNs);
+    }
+
+    private static int runIndexed(DataStore dataStore, String[] names) {
+        int ok = 0;
+        for (String name : names) {
+            User u = dataStore.findUserByUsername(name);
+            if (u != null && u.getPassword().startsWith("pw")) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    private static User linearFind(DataStore dataStore, String username) {
+        for (User u : dataStore.getUserMap().values()) {
+            if (u.getUsername().equals(username)) {
+                return u;
+            }
+        }
+        return null;
+    }
+}
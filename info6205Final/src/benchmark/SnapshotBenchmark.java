@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.DataStore;
+import model.Event;
+import model.PasswordHasher;
+import model.PriorityLevel;
+import model.User;
+import persistence.Snapshot;
+
+/**
+ * Writes a snapshot of a generated DataStore and measures a cold load of it
+ * (map, decode, parallel index rebuild) into an empty DataStore.
+ *
+ * Usage: java benchmark.SnapshotBenchmark [events] [users] [directory]
+ */
+public class SnapshotBenchmark {
+
+    private static final String[] TITLES = {
+        "Standup", "1:1", "Lunch", "Team Sync", "Sprint Planning", "Retro", "Design Review"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path dir = Paths.get(args.length > 2 ? args[2] : "snapshot-bench");
+        Random random = new Random(7);
+
+        // One shared hash: hashing every user's password would dwarf the snapshot itself
+        String password = PasswordHasher.hash("pw");
+        User[] users = new User[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = new User("id" + i, "user" + i, password);
+        }
+        List<String> friendships = new ArrayList<>();
+        for (int i = 0; i < userCount * 5; i++) {
+            friendships.add(users[random.nextInt(userCount)].getUserId());
+            friendships.add(users[random.nextInt(userCount)].getUserId());
+        }
+        String[] owners = new String[n];
+        Event[] events = new Event[n];
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < n; i++) {
+            owners[i] = users[random.nextInt(userCount)].getUserId();
+            LocalDateTime start = base.plusMinutes(15L * random.nextInt(365 * 96));
+            List<String> participants = new ArrayList<>();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                participants.add(users[random.nextInt(userCount)].getUsername());
+            }
+            events[i] = new Event("e" + i, TITLES[random.nextInt(TITLES.length)], start,
+                    start.plusMinutes(30), participants, PriorityLevel.values()[random.nextInt(3)]);
+        }
+
+        DataStore source = new DataStore();
+        long start = System.nanoTime();
+        source.loadBulk(users, friendships.toArray(new String[0]), owners, events);
+        System.out.printf("bulk index build: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        Snapshot.Image image = Snapshot.capture(source, 1);
+        long captureMs = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        Path file = Snapshot.write(image, dir);
+        long writeMs = (System.nanoTime() - start) / 1_000_000;
+        long bytes = Files.size(file);
+        System.out.printf("snapshot: %d MB, %.1f bytes/event, capture %d ms, write %d ms%n",
+                bytes >> 20, (double) bytes / n, captureMs, writeMs);
+
+        // Drop the source so the load runs with roughly the heap a fresh start would have
+        source = null;
+        image = null;
+        events = null;
+        System.gc();
+
+        DataStore loaded = new DataStore();
+        start = System.nanoTime();
+        Snapshot.load(file, loaded);
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("cold load: %d ms (%.0f events/s), %d events, %d users on %d cores%n",
+                loadMs, n * 1000.0 / Math.max(1, loadMs), loaded.getEventCount(),
+                loaded.getUserMap().size(), Runtime.getRuntime().availableProcessors());
+
+        Files.delete(file);
+        Files.deleteIfExists(dir);
+    }
+}
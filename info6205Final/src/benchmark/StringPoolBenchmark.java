@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Event;
+import model.PriorityLevel;
+import model.StringPool;
+
+/**
+ * Reports the heap saved by StringPool on realistic calendar data: titles drawn with a
+ * skewed distribution from a few hundred names ("Standup" most often) and 0-5
+ * participants per event from a few thousand usernames. Every string starts as a fresh
+ * instance, as it would when read from a form or an import file.
+ *
+ * Usage: java benchmark.StringPoolBenchmark [events] [users]
+ */
+public class StringPoolBenchmark {
+
+    private static final String[] COMMON_TITLES = {
+        "Standup", "1:1", "Lunch", "Team Sync", "Sprint Planning", "Retro",
+        "Design Review", "Interview", "Office Hours", "Gym"
+    };
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        Random random = new Random(7);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+
+        long empty = usedHeap();
+        List<Event> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            LocalDateTime start = base.plusMinutes(30L * i);
+            List<String> participants = new ArrayList<>();
+            int count = random.nextInt(6);
+            for (int j = 0; j < count; j++) {
+                participants.add("user" + random.nextInt(users));
+            }
+            events.add(new Event("e" + i, title(random), start, start.plusMinutes(30),
+                    participants, PriorityLevel.MEDIUM));
+        }
+        long unpooled = usedHeap() - empty;
+
+        StringPool pool = new StringPool();
+        long start = System.nanoTime();
+        for (Event e : events) {
+            e.setTitle(pool.intern(e.getTitle()));
+            e.setParticipants(pool.internAll(e.getParticipants()));
+        }
+        long internNs = System.nanoTime() - start;
+        long pooled = usedHeap() - empty;
+
+        System.out.printf("events: %d, distinct strings %d, duplicates replaced %d%n",
+                events.size(), pool.size(), pool.getDuplicatesReplaced());
+        System.out.printf("heap without pool: %d MB (%d bytes/event)%n",
+                unpooled >> 20, unpooled / n);
+        System.out.printf("heap with pool:    %d MB (%d bytes/event)%n",
+                pooled >> 20, pooled / n);
+        System.out.printf("measured saving:   %d MB, pool estimate %d MB%n",
+                (unpooled - pooled) >> 20, pool.getBytesSaved() >> 20);
+        System.out.printf("interning: %.0f ns/event%n", (double) internNs / n);
+    }
+
+    /**
+     * Mostly one of the common titles, sometimes one of a few hundred rarer ones
+     */
+    private static String title(Random random) {
+        if (random.nextInt(10) < 7) {
+            // Skewed towards the first entries
+            int i = (int) (COMMON_TITLES.length * Math.pow(random.nextDouble(), 2));
+            return new String(COMMON_TITLES[i]);
+        }
+        return "Project " + random.nextInt(300) + " review";
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
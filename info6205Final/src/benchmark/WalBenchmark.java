@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import model.DataStore;
+import model.Event;
+import model.PriorityLevel;
+import persistence.DurableStore;
+import persistence.FsyncPolicy;
+import persistence.JournalMutationLog;
+import persistence.WriteAheadLog;
+
+/**
+ * Write-ahead log throughput for each fsync policy, with 1 and 8 appending threads,
+ * followed by a replay of the last log into a fresh DataStore.
+ * Appends go through JournalMutationLog.eventAdded, i.e. the same records addEvent logs.
+ *
+ * Usage: java benchmark.WalBenchmark [directory] [opsPerThread] [everyOpOpsPerThread]
+ */
+public class WalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get(args.length > 0 ? args[0] : "wal-bench");
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int everyOpOps = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        Path last = null;
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            for (int threads : new int[] {1, 8}) {
+                Path dir = root.resolve(policy + "-" + threads);
+                deleteRecursively(dir);
+                int perThread = policy == FsyncPolicy.EVERY_OP ? everyOpOps : ops;
+                run(dir, policy, threads, perThread);
+                last = dir;
+            }
+        }
+
+        DataStore store = new DataStore();
+        DurableStore durable = DurableStore.open(store, last, FsyncPolicy.OS, 0);
+        System.out.printf("replay: %d records in %d ms (%.0f records/s)%n",
+                durable.getReplayedRecords(), durable.getReplayMillis(),
+                durable.getReplayedRecords() * 1000.0 / Math.max(1, durable.getReplayMillis()));
+        durable.close();
+        deleteRecursively(root);
+    }
+
+    private static void run(Path dir, FsyncPolicy policy, int threads, int perThread) throws Exception {
+        WriteAheadLog wal = WriteAheadLog.open(dir, policy, 10);
+        JournalMutationLog log = new JournalMutationLog(wal);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 0);
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    LocalDateTime start = base.plusMinutes(30L * i);
+                    Event e = new Event("t" + id + "e" + i, "Standup", start, start.plusMinutes(15),
+                            Arrays.asList("alice", "bob", "cathy"), PriorityLevel.MEDIUM);
+                    log.eventAdded("u00" + (1 + id % 4), e);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        wal.close();
+        long ns = System.nanoTime() - start;
+
+        long total = (long) threads * perThread;
+        System.out.printf("%-8s %d thread(s): %8.0f ops/s, %6.1f MB/s, %5.1f appends/write, %d fsyncs%n",
+                policy, threads, total * 1e9 / ns, wal.getBytesWritten() * 1e9 / ns / (1 << 20),
+                (double) wal.getAppendCount() / Math.max(1, wal.getWriteCount()), wal.getFsyncCount());
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -8,7 +8,6 @@ import model.User;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.UUID;
 
 public class EventController {
     private DataStore dataStore;
@@ -19,7 +18,7 @@ public class EventController {
 
     public void createEvent(User user, String title, LocalDateTime start, LocalDateTime end,
                             String participants, PriorityLevel priority) {
-        String eventId = UUID.randomUUID().toString();
+        String eventId = dataStore.newId();
         // Simplified handling of participants
         Event newEvent = new Event(eventId, title, start, end,
                                    Arrays.asList(participants.split(",")), 
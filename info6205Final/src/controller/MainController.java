@@ -21,9 +21,11 @@ public class MainController {
     // Login logic
     public boolean login(String username, String password) {
         User user = dataStore.findUserByUsername(username);
-        if (user != null && user.getPassword().equals(password)) {
+        if (user != null && user.checkPassword(password)) {
 
         	this.currentUser=user;
+            // Load the user's calendar now if the store hydrates users lazily
+            dataStore.hydrateUser(user.getUserId());
 
             // Login successful -> switch to calendar view
             navigationController.pushPane(new CalendarView(user, dataStore, navigationController,currentUser));
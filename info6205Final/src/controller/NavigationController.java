@@ -7,8 +7,11 @@ import javafx.stage.Stage;
 
 import adt.MyStack;
 import adt.impl.ArrayStack;
+import logging.Logger;
 
 public class NavigationController {
+    private static final Logger LOG = Logger.get(NavigationController.class);
+
     private Scene scene;
     private Pane currentPane;
     private ArrayStack<Pane> paneStack;
@@ -36,7 +39,7 @@ public class NavigationController {
             currentPane = paneStack.pop();
             scene.setRoot(currentPane);
         } else {
-            System.out.println("No more panes in stack.");
+            LOG.debug("No more panes in stack.");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package logging;
+
+/**
+ * Log levels, least to most severe. OFF is only used as a threshold, to silence everything.
+ */
+public enum Level {
+    DEBUG, INFO, WARN, ERROR, OFF
+}
@@ -0,0 +1,240 @@
+package logging;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LogRing:
+ *  - Bounded multi-producer, single-consumer ring of preallocated records.
+ *  - A producer claims a sequence number with a CAS, fills that slot's fields and
+ *    publishes it by writing the sequence into the slot: no lock, no allocation.
+ *  - When the ring is full a DEBUG or INFO record is dropped and counted, so those
+ *    callers never wait; WARN and ERROR records wait for the writer to make room.
+ *  - One daemon thread drains published records in order, formats them and writes
+ *    them to System.out (looked up per batch, so System.setOut redirects it), and
+ *    parks briefly whenever the ring is empty.
+ *  - A record that cannot be formatted (an argument whose toString throws, a null
+ *    template) is written as a fallback line naming the failure; the writer thread
+ *    never dies on a bad record.
+ */
+final class LogRing {
+    private static final long IDLE_NANOS = 1_000_000;
+    // Characters formatted before they are handed to the stream
+    private static final int BATCH_CHARS = 16 * 1024;
+
+    private static final class Slot {
+        // Sequence of the record in this slot once it is filled, -1 before the first one
+        volatile long published = -1;
+        long timeMillis;
+        Level level;
+        String logger;
+        String thread;
+        String template;
+        int argCount;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence to format; only the writer thread advances it
+    private volatile long consumed;
+    // Records before this sequence have been handed to the stream and flushed
+    private volatile long written;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    // Writer thread only
+    private final StringBuilder batch = new StringBuilder(BATCH_CHARS + 256);
+    private long lastMillis = -1;
+    private String lastTime;
+
+    /**
+     * @param capacity records held before new ones are dropped, rounded up to a power of two
+     */
+    LogRing(int capacity) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+        writer = new Thread(this::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-flush"));
+    }
+
+    /**
+     * Queue one record; argCount is how many of arg0..arg2 are used, or args.length
+     * when args is not null.
+     * @return false if the ring was full and the record was dropped
+     */
+    boolean offer(Level level, String logger, String template, int argCount,
+                  Object arg0, Object arg1, Object arg2, Object[] args) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= slots.length) {
+                if (level.compareTo(Level.WARN) < 0 || !writer.isAlive()) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                LockSupport.unpark(writer);
+                Thread.yield();
+                seq = -1;
+            }
+        } while (seq < 0 || !claimed.compareAndSet(seq, seq + 1));
+
+        // The writer released this slot before advancing consumed past its last use
+        Slot slot = slots[(int) seq & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.level = level;
+        slot.logger = logger;
+        slot.thread = Thread.currentThread().getName();
+        slot.template = template;
+        slot.argCount = argCount;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        slot.published = seq;
+        return true;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Wait until every record queued before this call has been written.
+     */
+    void flush() {
+        long target = claimed.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            } catch (Throwable t) {
+                // The stream itself failed; drop what was formatted and keep draining
+                batch.setLength(0);
+                written = consumed;
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Write every published record, in sequence order.
+     * @return how many were written
+     */
+    private int drain() {
+        PrintStream out = System.out;
+        int count = 0;
+        long next = consumed;
+        Slot slot = slots[(int) next & mask];
+        while (slot.published == next) {
+            int lineStart = batch.length();
+            try {
+                format(slot);
+            } catch (Throwable t) {
+                batch.setLength(lineStart);
+                formatFailure(slot, t);
+            }
+            slot.logger = null;
+            slot.template = null;
+            slot.arg0 = null;
+            slot.arg1 = null;
+            slot.arg2 = null;
+            slot.args = null;
+            consumed = ++next;
+            count++;
+            if (batch.length() >= BATCH_CHARS) {
+                out.print(batch);
+                batch.setLength(0);
+            }
+            slot = slots[(int) next & mask];
+        }
+        if (batch.length() > 0) {
+            out.print(batch);
+            batch.setLength(0);
+        }
+        if (count > 0) {
+            out.flush();
+        }
+        written = next;
+        return count;
+    }
+
+    /**
+     * Append one line: time, level, thread, logger, then the message with each "{}"
+     * replaced by the next argument. Messages without arguments are taken as they are.
+     */
+    private void format(Slot slot) {
+        appendPrefix(slot);
+        String template = slot.template;
+        int from = 0;
+        for (int i = 0; i < slot.argCount; i++) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) break;
+            batch.append(template, from, at).append(argument(slot, i));
+            from = at + 2;
+        }
+        batch.append(template, from, template.length()).append(System.lineSeparator());
+    }
+
+    /**
+     * Append the line for a record format() threw on: its template as is, and the
+     * exception's class and message
+     */
+    private void formatFailure(Slot slot, Throwable t) {
+        appendPrefix(slot);
+        batch.append("[unformattable log record: ").append(slot.template).append("; ")
+                .append(t.getClass().getName()).append(": ");
+        try {
+            batch.append(t.getMessage());
+        } catch (Throwable ignored) {
+            batch.append('?');
+        }
+        batch.append(']').append(System.lineSeparator());
+    }
+
+    /**
+     * Time, level, thread and logger
+     */
+    private void appendPrefix(Slot slot) {
+        if (slot.timeMillis != lastMillis) {
+            lastMillis = slot.timeMillis;
+            lastTime = Instant.ofEpochMilli(lastMillis).toString();
+        }
+        batch.append(lastTime).append(' ');
+        String level = slot.level.name();
+        batch.append(level);
+        for (int i = level.length(); i < 5; i++) {
+            batch.append(' ');
+        }
+        batch.append(" [").append(slot.thread).append("] ").append(slot.logger).append(" - ");
+    }
+
+    private static Object argument(Slot slot, int i) {
+        if (slot.args != null) {
+            return slot.args[i];
+        }
+        return i == 0 ? slot.arg0 : i == 1 ? slot.arg1 : slot.arg2;
+    }
+}
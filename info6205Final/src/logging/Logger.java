@@ -0,0 +1,228 @@
+package logging;
+
+import java.util.function.Supplier;
+
+/**
+ * Logger:
+ *  - Named logger writing through one shared LogRing: a call copies its level, template
+ *    and arguments into a ring slot and returns; the log-writer thread formats and prints
+ *    the line later. Each "{}" in the template is replaced by the next argument.
+ *  - Below the threshold a call returns after one volatile read and allocates nothing,
+ *    provided its arguments are already objects. An int argument is boxed before the
+ *    call and more than three arguments build an array, so guard those with isEnabled on
+ *    hot paths. Supplier overloads only run the supplier when the level is enabled.
+ *  - Arguments are turned into strings on the writer thread, so pass values that do not
+ *    change afterwards: strings, numbers, dates.
+ *  - The threshold starts at the log.level system property (DEBUG, INFO, WARN, ERROR or
+ *    OFF; default INFO) and can be changed with setLevel.
+ */
+public final class Logger {
+    private static final LogRing RING = new LogRing(8192);
+    private static volatile int threshold = initialLevel().ordinal();
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A logger named after the class's simple name.
+     */
+    public static Logger get(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static Logger get(String name) {
+        return new Logger(name);
+    }
+
+    /**
+     * Only log records at this level or above, for every logger.
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * Wait until everything logged so far has been written.
+     */
+    public static void flush() {
+        RING.flush();
+    }
+
+    /**
+     * Records dropped because the ring was full.
+     */
+    public static long getDroppedCount() {
+        return RING.getDroppedCount();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, message, 0, null, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object arg0) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, template, 1, arg0, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object arg0, Object arg1) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, template, 2, arg0, arg1, null, null);
+        }
+    }
+
+    public void debug(String template, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, template, 3, arg0, arg1, arg2, null);
+        }
+    }
+
+    public void debug(String template, Object... args) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, template, args.length, null, null, null, args);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            RING.offer(Level.DEBUG, name, message.get(), 0, null, null, null, null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, message, 0, null, null, null, null);
+        }
+    }
+
+    public void info(String template, Object arg0) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, template, 1, arg0, null, null, null);
+        }
+    }
+
+    public void info(String template, Object arg0, Object arg1) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, template, 2, arg0, arg1, null, null);
+        }
+    }
+
+    public void info(String template, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, template, 3, arg0, arg1, arg2, null);
+        }
+    }
+
+    public void info(String template, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, template, args.length, null, null, null, args);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            RING.offer(Level.INFO, name, message.get(), 0, null, null, null, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, message, 0, null, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object arg0) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, template, 1, arg0, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object arg0, Object arg1) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, template, 2, arg0, arg1, null, null);
+        }
+    }
+
+    public void warn(String template, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, template, 3, arg0, arg1, arg2, null);
+        }
+    }
+
+    public void warn(String template, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, template, args.length, null, null, null, args);
+        }
+    }
+
+    public void warn(Supplier<String> message) {
+        if (isEnabled(Level.WARN)) {
+            RING.offer(Level.WARN, name, message.get(), 0, null, null, null, null);
+        }
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, message, 0, null, null, null, null);
+        }
+    }
+
+    public void error(String template, Object arg0) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, template, 1, arg0, null, null, null);
+        }
+    }
+
+    public void error(String template, Object arg0, Object arg1) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, template, 2, arg0, arg1, null, null);
+        }
+    }
+
+    public void error(String template, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, template, 3, arg0, arg1, arg2, null);
+        }
+    }
+
+    public void error(String template, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, template, args.length, null, null, null, args);
+        }
+    }
+
+    public void error(Supplier<String> message) {
+        if (isEnabled(Level.ERROR)) {
+            RING.offer(Level.ERROR, name, message.get(), 0, null, null, null, null);
+        }
+    }
+
+    private static Level initialLevel() {
+        String level = System.getProperty("log.level");
+        if (level == null) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(level.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import adt.MyMap;
+import adt.impl.SparseIntArray;
+
+/**
+ * AvailabilityIndex:
+ *  - Busy time per user as one 96-bit bitmap per day (15-minute slots),
+ *    stored in two longs: word 0 = slots 0..63, word 1 = slots 64..95.
+ *  - userId -> (epochDay -> long[2]), days in a SparseIntArray so lookups are array indexes
+ *  - Group free-slot search ORs the participants' words together, so each day costs
+ *    two long operations per participant no matter how many events they have.
+ */
+class AvailabilityIndex {
+
+    static final int SLOT_MINUTES = 15;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES; // 96
+
+    private static final long HIGH_WORD_MASK = (1L << (SLOTS_PER_DAY - 64)) - 1;
+
+    private final MyMap<String, SparseIntArray<long[]>> busy = new IdKeyedMap<>();
+
+    /**
+     * Mark the slots covered by [start, end) as busy for the user.
+     */
+    void markBusy(String userId, LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            return;
+        }
+        SparseIntArray<long[]> days = busy.get(userId);
+        if (days == null) {
+            days = new SparseIntArray<>();
+            busy.put(userId, days);
+        }
+        markBusy(days, start, end);
+    }
+
+    /**
+     * Busy bitmaps for one user built from scratch; touches no shared state, so
+     * several users can be built in parallel and installed with putDays.
+     */
+    static SparseIntArray<long[]> buildDays(List<Event> owned, List<Event> invited) {
+        SparseIntArray<long[]> days = new SparseIntArray<>();
+        for (Event e : owned) {
+            markBusy(days, e.getStartTime(), e.getEndTime());
+        }
+        for (Event e : invited) {
+            markBusy(days, e.getStartTime(), e.getEndTime());
+        }
+        return days;
+    }
+
+    /**
+     * Get a user's bitmaps, creating an empty set if they have none, so several users
+     * can then be marked in parallel with the static markBusy.
+     */
+    SparseIntArray<long[]> daysFor(String userId) {
+        SparseIntArray<long[]> days = busy.get(userId);
+        if (days == null) {
+            days = new SparseIntArray<>();
+            busy.put(userId, days);
+        }
+        return days;
+    }
+
+    /**
+     * Replace a user's bitmaps with ones made by buildDays.
+     */
+    void putDays(String userId, SparseIntArray<long[]> days) {
+        if (days.isEmpty()) {
+            busy.remove(userId);
+        } else {
+            busy.put(userId, days);
+        }
+    }
+
+    static void markBusy(SparseIntArray<long[]> days, LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            return;
+        }
+        LocalDate day = start.toLocalDate();
+        LocalDate lastDay = end.minusNanos(1).toLocalDate();
+        while (!day.isAfter(lastDay)) {
+            int from = day.equals(start.toLocalDate()) ? slotOf(start.toLocalTime()) : 0;
+            int to = day.equals(lastDay) ? slotEnd(end, day) : SLOTS_PER_DAY;
+            long[] words = days.get(UserCalendar.epochDay(day));
+            if (words == null) {
+                words = new long[2];
+                days.put(UserCalendar.epochDay(day), words);
+            }
+            setRange(words, from, to);
+            day = day.plusDays(1);
+        }
+    }
+
+    /**
+     * Rebuild one day's bitmap for the user from the events that still overlap it.
+     */
+    void rebuildDay(String userId, LocalDate day, List<Event> overlapping) {
+        SparseIntArray<long[]> days = busy.get(userId);
+        if (days == null) {
+            return;
+        }
+        days.remove(UserCalendar.epochDay(day));
+        LocalDateTime dayStart = day.atStartOfDay();
+        LocalDateTime dayEnd = dayStart.plusDays(1);
+        for (Event e : overlapping) {
+            LocalDateTime s = e.getStartTime().isBefore(dayStart) ? dayStart : e.getStartTime();
+            LocalDateTime t = e.getEndTime().isAfter(dayEnd) ? dayEnd : e.getEndTime();
+            markBusy(userId, s, t);
+        }
+        if (days.isEmpty()) {
+            busy.remove(userId);
+        }
+    }
+
+    /**
+     * A user's bitmaps, or null if they are busy on no day.
+     */
+    SparseIntArray<long[]> daysOf(String userId) {
+        return busy.get(userId);
+    }
+
+    /**
+     * Find the first k non-overlapping time slots of the given number of 15-minute slots
+     * in which none of the users is busy, scanning days from..to (inclusive).
+     * Slots do not cross midnight.
+     * @param calendars the users' bitmaps (daysOf), which may come from several indexes
+     * @param endSlot slots must end by this slot of their day (SLOTS_PER_DAY for midnight)
+     * @return start times of the free slots, in time order
+     */
+    static List<LocalDateTime> findCommonFreeSlots(List<SparseIntArray<long[]>> calendars, LocalDate from,
+                                                   LocalDate to, int slotsNeeded, int endSlot, int k) {
+        List<LocalDateTime> result = new ArrayList<>();
+        if (slotsNeeded <= 0 || slotsNeeded > Math.min(endSlot, SLOTS_PER_DAY) || k <= 0) {
+            return result;
+        }
+        // Starts from here on would end after endSlot
+        int lateStart = Math.min(endSlot, SLOTS_PER_DAY) - slotsNeeded + 1;
+        long startMaskLo = lowBits(lateStart);
+        long startMaskHi = lowBits(lateStart - 64);
+
+        for (LocalDate day = from; !day.isAfter(to) && result.size() < k; day = day.plusDays(1)) {
+            // OR every participant's busy words for this day
+            long busyLo = 0;
+            long busyHi = 0;
+            int key = UserCalendar.epochDay(day);
+            for (SparseIntArray<long[]> days : calendars) {
+                long[] words = days.get(key);
+                if (words != null) {
+                    busyLo |= words[0];
+                    busyHi |= words[1];
+                }
+            }
+            long freeLo = ~busyLo;
+            long freeHi = ~busyHi & HIGH_WORD_MASK;
+
+            // Bit i of (runLo, runHi) survives only if slots i..i+slotsNeeded-1 are all free
+            long runLo = freeLo;
+            long runHi = freeHi;
+            long shiftedLo = freeLo;
+            long shiftedHi = freeHi;
+            for (int i = 1; i < slotsNeeded; i++) {
+                shiftedLo = (shiftedLo >>> 1) | (shiftedHi << 63);
+                shiftedHi = shiftedHi >>> 1;
+                runLo &= shiftedLo;
+                runHi &= shiftedHi;
+            }
+            runLo &= startMaskLo;
+            runHi &= startMaskHi;
+
+            // Take starts in order, skipping past each chosen slot so results don't overlap
+            int slot = 0;
+            while (slot < SLOTS_PER_DAY && result.size() < k) {
+                int next = nextSetBit(runLo, runHi, slot);
+                if (next < 0) break;
+                result.add(day.atStartOfDay().plusMinutes((long) next * SLOT_MINUTES));
+                slot = next + slotsNeeded;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The lowest n bits set (none for n <= 0, all for n >= 64).
+     */
+    private static long lowBits(int n) {
+        return n <= 0 ? 0 : n >= 64 ? -1L : (1L << n) - 1;
+    }
+
+    private static int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    /**
+     * Exclusive end slot on day for an interval ending at end (partial slots count as busy).
+     */
+    private static int slotEnd(LocalDateTime end, LocalDate day) {
+        if (!end.toLocalDate().equals(day)) {
+            return SLOTS_PER_DAY;
+        }
+        int minutes = end.getHour() * 60 + end.getMinute() + (end.getSecond() > 0 || end.getNano() > 0 ? 1 : 0);
+        return Math.min(SLOTS_PER_DAY, (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES);
+    }
+
+    private static void setRange(long[] words, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            words[slot >>> 6] |= 1L << slot;
+        }
+    }
+
+    private static int nextSetBit(long lo, long hi, int from) {
+        if (from < 64) {
+            long masked = lo & (-1L << from);
+            if (masked != 0) {
+                return Long.numberOfTrailingZeros(masked);
+            }
+            from = 64;
+        }
+        if (from < SLOTS_PER_DAY) {
+            long masked = hi & (-1L << (from - 64));
+            if (masked != 0) {
+                return 64 + Long.numberOfTrailingZeros(masked);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,337 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import adt.MyMap;
+import adt.impl.HashMap;
+import adt.impl.StringDictionary;
+
+/**
+ * ColumnarEventStore:
+ *  - Optional compact storage for large numbers of events, one primitive array per field
+ *    instead of one Event object graph (two LocalDateTimes, a title, a List) per event:
+ *      ids          String[]  event ids
+ *      starts/ends  long[]    UTC epoch seconds (second precision)
+ *      priorities   byte[]    PriorityLevel ordinal, -1 for none
+ *      titleCodes   int[]     codes into a title dictionary, -1 for none
+ *      participants int[]     codes into a name dictionary, stored back to back with
+ *                             participantStart[row]..participantStart[row + 1] per row
+ *  - Reads return flyweight Event views that decode a row on demand; they are read-only
+ *    and a new view is created per call, so compare them by eventId rather than identity.
+ *  - Scans such as countOverlapping run over the primitive columns without creating objects.
+ *  - Standalone: DataStore does not use it. Its calendars and indexes hold the Event
+ *    objects callers pass in and later edit, at full LocalDateTime precision, which the
+ *    read-only second-precision views here cannot stand in for. Use it for bulk data that
+ *    is only scanned, such as an archive of past events or an export staging area.
+ */
+public class ColumnarEventStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final PriorityLevel[] PRIORITIES = PriorityLevel.values();
+
+    private final StringDictionary titles = new StringDictionary();
+    private final StringDictionary names = new StringDictionary();
+
+    private String[] ids = new String[INITIAL_CAPACITY];   // null once removed
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private byte[] priorities = new byte[INITIAL_CAPACITY];
+    private int[] titleCodes = new int[INITIAL_CAPACITY];
+    private int[] participantStart = new int[INITIAL_CAPACITY + 1];
+    private int[] participantCodes = new int[INITIAL_CAPACITY];
+
+    private int rows;       // rows used, including removed ones
+    private int liveCount;  // rows not removed
+
+    // eventId -> row
+    private final MyMap<String, Integer> rowOf = new HashMap<>();
+
+    /**
+     * Add an event, replacing any stored event with the same id
+     * @param event The event to copy into the columns
+     */
+    public void add(Event event) {
+        if (event == null || event.getEventId() == null) {
+            throw new IllegalArgumentException("Event and eventId cannot be null");
+        }
+        remove(event.getEventId());
+        if (rows == ids.length) {
+            grow();
+        }
+        int row = rows++;
+        ids[row] = event.getEventId();
+        starts[row] = toEpochSecond(event.getStartTime());
+        ends[row] = toEpochSecond(event.getEndTime());
+        priorities[row] = event.getPriority() == null ? -1 : (byte) event.getPriority().ordinal();
+        titleCodes[row] = event.getTitle() == null ? -1 : titles.encode(event.getTitle());
+
+        int pos = participantStart[row];
+        List<String> participants = event.getParticipants();
+        if (participants != null) {
+            for (String name : participants) {
+                if (pos == participantCodes.length) {
+                    participantCodes = Arrays.copyOf(participantCodes, pos * 2);
+                }
+                participantCodes[pos++] = names.encode(name);
+            }
+        }
+        participantStart[row + 1] = pos;
+
+        rowOf.put(event.getEventId(), row);
+        liveCount++;
+    }
+
+    /**
+     * Get a read-only view of an event
+     * @param eventId Event ID
+     * @return the view, or null if not stored
+     */
+    public Event get(String eventId) {
+        Integer row = rowOf.get(eventId);
+        return row == null ? null : new EventView(row);
+    }
+
+    /**
+     * Remove an event. Its row is left as a hole until compact() is called.
+     * @param eventId Event ID
+     * @return true if the event was stored
+     */
+    public boolean remove(String eventId) {
+        Integer row = rowOf.remove(eventId);
+        if (row == null) {
+            return false;
+        }
+        ids[row] = null;
+        liveCount--;
+        return true;
+    }
+
+    /**
+     * Get the number of stored events
+     * @return the number of events
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    public boolean isEmpty() {
+        return liveCount == 0;
+    }
+
+    /**
+     * Visit every event in insertion order. The same view object is moved from row to
+     * row, so it must not be kept after the callback returns.
+     * @param action Callback for each event
+     */
+    public void forEach(Consumer<? super Event> action) {
+        EventView cursor = new EventView(0);
+        for (int row = 0; row < rows; row++) {
+            if (ids[row] != null) {
+                cursor.row = row;
+                action.accept(cursor);
+            }
+        }
+    }
+
+    /**
+     * Count events overlapping [from, to) by scanning the time columns only.
+     */
+    public int countOverlapping(LocalDateTime from, LocalDateTime to) {
+        long lo = toEpochSecond(from);
+        long hi = toEpochSecond(to);
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (starts[row] < hi && ends[row] > lo && ids[row] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Events overlapping [from, to), in insertion order.
+     */
+    public List<Event> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        long lo = toEpochSecond(from);
+        long hi = toEpochSecond(to);
+        List<Event> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (starts[row] < hi && ends[row] > lo && ids[row] != null) {
+                result.add(new EventView(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Close the holes left by removed events. Views obtained earlier become invalid.
+     */
+    public void compact() {
+        if (liveCount == rows) {
+            return;
+        }
+        int out = 0;
+        int codesOut = 0;
+        for (int row = 0; row < rows; row++) {
+            if (ids[row] == null) continue;
+            int from = participantStart[row];
+            int count = participantStart[row + 1] - from;
+            System.arraycopy(participantCodes, from, participantCodes, codesOut, count);
+            ids[out] = ids[row];
+            starts[out] = starts[row];
+            ends[out] = ends[row];
+            priorities[out] = priorities[row];
+            titleCodes[out] = titleCodes[row];
+            participantStart[out] = codesOut;
+            codesOut += count;
+            rowOf.put(ids[out], out);
+            out++;
+        }
+        participantStart[out] = codesOut;
+        Arrays.fill(ids, out, rows, null);
+        rows = out;
+    }
+
+    /**
+     * Approximate heap bytes held by the columns, excluding the id strings themselves
+     * and the dictionaries' distinct strings.
+     */
+    public long columnBytes() {
+        long refs = 4L * ids.length;
+        long longs = 8L * (starts.length + ends.length);
+        long ints = 4L * (titleCodes.length + participantStart.length + participantCodes.length);
+        return refs + longs + ints + priorities.length;
+    }
+
+    /**
+     * Get the number of distinct titles stored
+     */
+    public int distinctTitles() {
+        return titles.size();
+    }
+
+    /**
+     * Get the number of distinct participant names stored
+     */
+    public int distinctParticipants() {
+        return names.size();
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        titleCodes = Arrays.copyOf(titleCodes, capacity);
+        participantStart = Arrays.copyOf(participantStart, capacity + 1);
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return UserCalendar.toEpochSecond(time);
+    }
+
+    /**
+     * Read-only Event backed by one row of the columns
+     */
+    private final class EventView extends Event {
+        private int row;
+
+        EventView(int row) {
+            super(null, null, null, null, null, null);
+            this.row = row;
+        }
+
+        @Override
+        public String getEventId() {
+            return ids[row];
+        }
+
+        @Override
+        public String getTitle() {
+            int code = titleCodes[row];
+            return code < 0 ? null : titles.decode(code);
+        }
+
+        @Override
+        public LocalDateTime getStartTime() {
+            return LocalDateTime.ofEpochSecond(starts[row], 0, ZoneOffset.UTC);
+        }
+
+        @Override
+        public LocalDateTime getEndTime() {
+            return LocalDateTime.ofEpochSecond(ends[row], 0, ZoneOffset.UTC);
+        }
+
+        @Override
+        public PriorityLevel getPriority() {
+            byte p = priorities[row];
+            return p < 0 ? null : PRIORITIES[p];
+        }
+
+        @Override
+        public List<String> getParticipants() {
+            int from = participantStart[row];
+            int count = participantStart[row + 1] - from;
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    if (index < 0 || index >= count) {
+                        throw new IndexOutOfBoundsException("Index: " + index);
+                    }
+                    return names.decode(participantCodes[from + index]);
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public void setEventId(String eventId) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public void setStartTime(LocalDateTime startTime) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public void setEndTime(LocalDateTime endTime) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public void setParticipants(List<String> participants) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public void setPriority(PriorityLevel priority) {
+            throw new UnsupportedOperationException("Columnar events are read-only");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s ~ %s)", getTitle(), getStartTime(), getEndTime());
+        }
+    }
+}
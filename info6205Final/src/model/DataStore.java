@@ -1,58 +1,254 @@
 package model;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import adt.MyMap;
 import adt.impl.ArrayStack;
+import adt.impl.CompactGraph;
 import adt.impl.HashMap;
+import adt.impl.RadixTree;
+import adt.impl.ScalableBloomFilter;
+import adt.impl.SparseIntArray;
+import adt.impl.TrigramIndex;
 import adt.MyPriorityQueue;
 import adt.MyStack;
 import adt.impl.PriorityQueue;
+import logging.Logger;
 
 
 /**
  * DataStore:
  *  - Maintains core data structures:
- *      1) userMap (String -> User)
+ *      1) userMap (String -> User), plus a username -> User index
  *      2) eventMap (String -> Event)
- *      3) userDailyEvents (String -> (LocalDate -> PriorityQueue<Event>))
+ *      3) per-user calendars (String -> UserCalendar: epoch day -> PriorityQueue<Event>, plus
+ *         interval tree and time-ordered index), owned and invited, in lock stripes
  *      4) adjacencyList (String -> Set<String>) for friendships
  *      5) stack (Stack<Object>) for page transitions or undo actions
+ *  - Lazy hydration mode (enableLazyHydration): only users and the friend graph stay
+ *    resident; a user's calendars are loaded from a PartitionStore the first time a
+ *    query or login touches them, and the least recently used are evicted to stay
+ *    under a memory budget. getEventById, searchEventsByTitle, getEvents and
+ *    getEventCount then only see events of hydrated users; the PartitionStore has the
+ *    rest. getEventOwner asks the PartitionStore for events that are not resident.
+ *  - Safe for concurrent use. Each user's calendars and busy bitmaps live in one of
+ *    SHARDS lock stripes, and each event's eventMap, owner and invitee entries in one of
+ *    EVENT_STRIPES more (StampedLock per stripe), so adding or removing events of users
+ *    in different stripes only meets on the title index lock, held for the title update
+ *    alone. Users and friendships have one more StampedLock, which event writes only
+ *    read-lock. Mutation log records are queued under the locks and waited for after
+ *    they are released, so no lock is held across log I/O. Day queries and id lookups
+ *    read optimistically and only lock if a writer interfered. In lazy hydration mode a
+ *    query for a hydrated user only read-locks their shard, which keeps them from being
+ *    evicted; hydrating and writing run one at a time under every lock, since hydrating
+ *    one user can evict any other.
+ *  - Multi-version mode (enableMultiVersion): every event mutation bumps a version and
+ *    keeps the previous one while an open DataStoreSnapshot may still read it, so long
+ *    reports see one point in time without holding any lock.
  */
 public class DataStore {
 
+    private static final Logger LOG = Logger.get(DataStore.class);
+
     // ========= 1) USER MAP & 2) EVENT MAP =========
-    private MyMap<String, User> userMap = new HashMap<>();
-    private MyMap<String, Event> eventMap = new HashMap<>();
+    // Maps keyed by user/event ids are IdKeyedMaps, which store generated ids as longs
+    private volatile IdGenerator idGenerator = new SnowflakeIdGenerator();
+
+    private MyMap<String, User> userMap = new IdKeyedMap<>();
+    // eventMap, owners and invitees, split by eventId over lock stripes
+    private static final int EVENT_STRIPES = 64;
+    private final EventStripe[] eventStripes = new EventStripe[EVENT_STRIPES];
+
+    // Secondary index: username -> User, kept in sync by addUser/renameUser
+    private MyMap<String, User> usernameIndex = new HashMap<>();
+
+    // Radix tree over lower-cased usernames for type-ahead prefix and fuzzy search
+    private RadixTree<User> usernamePrefixIndex = new RadixTree<>();
+
+    // Bloom filter over usernames: a miss means the name is definitely free,
+    // so registration only probes usernameIndex on a possible hit.
+    private ScalableBloomFilter usernameFilter = new ScalableBloomFilter(1024, 0.01);
+    // Counted under the read lock, hence adders
+    private final LongAdder usernameFilterNegatives = new LongAdder();      // answered "definitely free" by the filter
+    private final LongAdder usernameFilterFalsePositives = new LongAdder(); // filter said "maybe", index said free
+
+    // Shared instances for repeated event titles and participant names, applied by addEvent
+    // and released when the event is removed, replaced or evicted
+    private StringPool stringPool = new StringPool();
+
+    // Trigram inverted index over event titles, maintained by addEvent/removeEvent
+    private TrigramIndex<Event> titleIndex = new TrigramIndex<>();
 
     // ========= 3) USER DAILY EVENTS (PriorityQueue) =========
-    // userId -> (date -> priority queue of events)
-    private MyMap<String, MyMap<LocalDate, PriorityQueue<Event>>> userDailyEvents = new HashMap<>();
+    // Owned and invited calendars and busy bitmaps, split by userId over lock stripes
+    private static final int SHARDS = 64;
+    private final Shard[] shards = new Shard[SHARDS];
+
+    // Merge orders for combining owned and invited events
+    private static final Comparator<Event> PRIORITY_ORDER = new EventPriorityComparator();
+    private static final Comparator<Event> TIME_ORDER =
+            Comparator.comparing(Event::getStartTime).thenComparing(Event::getEventId);
 
     // ========= 4) ADJACENCY LIST for user relationships =========
     // userId -> set of friend userIds
-    private MyMap<String, Set<String>> adjacencyList = new HashMap<>();
+    private MyMap<String, Set<String>> adjacencyList = new IdKeyedMap<>();
+
+    // Frozen, cache-friendly copy of adjacencyList used by graph algorithms, plus the
+    // users and friendships added since it was frozen; null until first needed.
+    private volatile FriendGraphView friendView;
+
+    // Friendships added since the freeze that recommendFriends tolerates before refreezing:
+    // at least MIN_FRIEND_DELTA, or one in FRIEND_DELTA_RATIO of the frozen edges
+    static final int MIN_FRIEND_DELTA = 64;
+    private static final int FRIEND_DELTA_RATIO = 8;
 
     // ========= 5) STACK for page transitions or undo operations =========
     // This can store different types depending on your usage:
     // e.g., Stack<Pane> for GUI pages, or Stack<Operation> for undo actions.
     private MyStack<Object> stack = new ArrayStack<>();
 
+    // Told about every mutation before it is applied (journal for persistence); null when not persistent
+    private volatile MutationLog mutationLog;
+
+    // ========= 6) LAZY HYDRATION =========
+    // Per-user event storage; null while every event is resident
+    private volatile PartitionStore partitionStore;
+    private long hydrationBudgetBytes;
+    // userId whose calendars are resident -> tick of its last use, set under a read lock
+    private MyMap<String, AtomicLong> hydratedUsers;
+    private final AtomicLong useClock = new AtomicLong();
+    private long hydrations;
+    private long evictions;
+
+    // Rough heap cost of one calendar entry: the Event, its strings and list, and its
+    // entries in eventMap, the title index, the day queue, interval tree and skip list
+    static final int RESIDENT_EVENT_BYTES = 1024;
+
+    // ========= 7) LOCKING =========
+    // Lock order: shards, then event stripes, each in index order, then indexLock, then
+    // textLock. indexLock guards users, usernames, friendships, the version log and the
+    // lazy hydration state; textLock guards titleIndex and stringPool.
+    private final StampedLock indexLock = new StampedLock();
+    private final StampedLock textLock = new StampedLock();
+
+    // ========= 8) MULTI-VERSION READS =========
+    // Off until enableMultiVersion, which holds every lock; all fields but openSnapshots
+    // are guarded by indexLock, written by event mutations under its write lock
+    private volatile boolean multiVersion;
+    private volatile long version;
+    // Every version an open or future snapshot may need, in creation order. Only appended
+    // to in place; growing and compacting copy, so snapshots keep scanning the array they got.
+    private EventVersion[] versionLog;
+    private int versionCount;
+    // eventId -> newest version, linked to older ones still needed
+    private MyMap<String, EventVersion> versionChains;
+    // Versions in versionLog that are no longer current
+    private int supersededVersions;
+    private int collectThreshold;
+    private long collections;
+    // Open snapshot version -> number open at it
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+
+    static final int MIN_COLLECT = 1024;
+
+    /**
+     * A frozen friend graph and what changed since. Built under indexLock's read lock
+     * (writers cannot run, so the delta starts empty) and only changed under its write lock.
+     */
+    private static final class FriendGraphView {
+        final CompactGraph<String> graph;
+        // userId -> friends added since the freeze; new users map to an empty set
+        final MyMap<String, Set<String>> added = new IdKeyedMap<>();
+        int addedEdges;
+
+        FriendGraphView(CompactGraph<String> graph) {
+            this.graph = graph;
+        }
+
+        /**
+         * Frozen neighbours plus added ones
+         */
+        Set<String> friendsOf(String userId) {
+            Set<String> friends = new HashSet<>();
+            int index = graph.indexOf(userId);
+            if (index >= 0) {
+                for (int i = 0; i < graph.degree(index); i++) {
+                    friends.add(graph.vertexAt(graph.neighbour(index, i)));
+                }
+            }
+            Set<String> extra = added.get(userId);
+            if (extra != null) {
+                friends.addAll(extra);
+            }
+            return friends;
+        }
+    }
+
+    /**
+     * One lock stripe: the calendars and busy bitmaps of every user whose id hashes here.
+     */
+    private static final class Shard {
+        final StampedLock lock = new StampedLock();
+        // userId -> calendar of events the user created: per-day priority queues,
+        // interval tree for conflicts and skip list for time ranges
+        MyMap<String, UserCalendar> owned = new IdKeyedMap<>();
+        // Participant index: userId -> calendar of events the user is invited to (but did not create)
+        MyMap<String, UserCalendar> invited = new IdKeyedMap<>();
+        // Per-user, per-day 15-minute busy bitmaps (owned + invited) for group scheduling
+        AvailabilityIndex availability = new AvailabilityIndex();
+    }
+
+    /**
+     * One lock stripe of the event id maps: every event whose id hashes here.
+     */
+    private static final class EventStripe {
+        final StampedLock lock = new StampedLock();
+        IdKeyedMap<Event> events = new IdKeyedMap<>();
+        // eventId -> userId of the user who created it
+        IdKeyedMap<String> owners = new IdKeyedMap<>();
+        // eventId -> userIds the event was indexed under as an invitee
+        MyMap<String, List<String>> invitees = new IdKeyedMap<>();
+    }
+
     /**
      * Constructor:
      *  Optionally initialize some default data.
      */
     public DataStore() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+        for (int i = 0; i < EVENT_STRIPES; i++) {
+            eventStripes[i] = new EventStripe();
+        }
         // Example: Add a default user to userMap
-        User u1 = new User("u001", "alice", "123456");
-        User u2 = new User("u002", "bob",   "pwd123");
-        User u3 = new User("u003", "cathy", "abcxyz");
-        User u4 = new User("u004", "dylan", "456456");
+        // (passwords 123456, pwd123, abcxyz, 456456, stored as PasswordHasher hashes)
+        User u1 = new User("u001", "alice",
+                "pbkdf2$120000$htgBO2sRjVmZgWYSG/MWLA==$3lgETJXZTVrng8Nl9q8RW4BopyWZvb/9KeNo+bO/ZIo=");
+        User u2 = new User("u002", "bob",
+                "pbkdf2$120000$PxMvWZu/+e5cGDiEEOYToA==$XEAjsrkIWjrDPdrNscuNE7H2d6laBbRFg0PLM2Qqj4w=");
+        User u3 = new User("u003", "cathy",
+                "pbkdf2$120000$myzKlRfGcMnkt2pzwx+xwA==$4ouaBDTDa+2aIBSZTeS1kpJXyM7jYrpIUh7n7e1q1i4=");
+        User u4 = new User("u004", "dylan",
+                "pbkdf2$120000$7zW+lQf0blZS8FEwK3v0zQ==$PbNReIKJoCpZECbFbXEaP7PxxW0jUwyzckCNpK1U+pw=");
         addUser(u1);
         addUser(u2);
         addUser(u3);
@@ -73,24 +269,206 @@ public class DataStore {
      * Add a new user to both userMap and adjacencyList.
      */
     public void addUser(User user) {
-        userMap.put(user.getUserId(), user);
-        adjacencyList.putIfAbsent(user.getUserId(), new HashSet<>());
+        if (user == null || user.getUserId() == null || user.getUsername() == null) {
+            throw new IllegalArgumentException("User needs an id and a username");
+        }
+        long stamp = indexLock.writeLock();
+        try {
+            if (mutationLog != null) {
+                mutationLog.userAdded(user);
+            }
+            User previous = userMap.put(user.getUserId(), user);
+            if (previous != null) {
+                usernameIndex.remove(previous.getUsername());
+                usernamePrefixIndex.remove(previous.getUsername().toLowerCase(), previous);
+            }
+            usernameIndex.put(user.getUsername(), user);
+            usernamePrefixIndex.put(user.getUsername().toLowerCase(), user);
+            usernameFilter.add(user.getUsername());
+            if (adjacencyList.get(user.getUserId()) == null) {
+                adjacencyList.put(user.getUserId(), new HashSet<>());
+                FriendGraphView view = friendView;
+                if (view != null && view.added.get(user.getUserId()) == null) {
+                    view.added.put(user.getUserId(), new HashSet<>());
+                }
+            }
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+        awaitLogged();
     }
 
     /**
-     * Find user by username (linear search).
+     * Find user by username (hash index lookup).
      */
     public User findUserByUsername(String username) {
-        for (User u : userMap.values()) {
-            if (u.getUsername().equals(username)) {
-                return u;
+        return optimisticRead(indexLock, () -> usernameIndex.get(username));
+    }
+
+    /**
+     * Change a user's username, keeping the username index consistent.
+     * @return false if the user does not exist or the new name is taken by someone else
+     */
+    public boolean renameUser(String userId, String newUsername) {
+        if (newUsername == null) {
+            throw new IllegalArgumentException("Username cannot be null");
+        }
+        boolean renamed = renameUserLocked(userId, newUsername);
+        awaitLogged();
+        return renamed;
+    }
+
+    private boolean renameUserLocked(String userId, String newUsername) {
+        long stamp = indexLock.writeLock();
+        try {
+            User user = userMap.get(userId);
+            if (user == null) {
+                return false;
+            }
+            User owner = usernameIndex.get(newUsername);
+            if (owner != null && owner != user) {
+                return false;
+            }
+            if (mutationLog != null) {
+                mutationLog.userRenamed(userId, newUsername);
+            }
+            usernameIndex.remove(user.getUsername());
+            usernamePrefixIndex.remove(user.getUsername().toLowerCase(), user);
+            user.setUsername(newUsername);
+            usernameIndex.put(newUsername, user);
+            usernamePrefixIndex.put(newUsername.toLowerCase(), user);
+            // The old name stays in the filter; it only costs an extra exact lookup
+            usernameFilter.add(newUsername);
+            return true;
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Type-ahead search: up to limit users whose username starts with prefix
+     * (case-insensitive), in alphabetical order. Does not copy the user list.
+     */
+    public List<User> searchUsersByPrefix(String prefix, int limit) {
+        return readLocked(indexLock, () -> usernamePrefixIndex.prefixSearch(prefix.toLowerCase(), limit));
+    }
+
+    /**
+     * Typo-tolerant lookup: up to limit users whose username is within maxDistance
+     * edits of the given name (case-insensitive), closest first.
+     */
+    public List<User> findSimilarUsers(String username, int maxDistance, int limit) {
+        return readLocked(indexLock, () -> usernamePrefixIndex.fuzzySearch(username.toLowerCase(), maxDistance, limit));
+    }
+
+    /**
+     * Check whether a username can still be registered.
+     * The Bloom filter answers "definitely free" without touching usernameIndex;
+     * only a possible hit falls back to the exact lookup.
+     */
+    public boolean isUsernameAvailable(String username) {
+        long stamp = indexLock.readLock();
+        try {
+            if (!usernameFilter.mightContain(username)) {
+                usernameFilterNegatives.increment();
+                return true;
             }
+            if (usernameIndex.get(username) == null) {
+                usernameFilterFalsePositives.increment();
+                return true;
+            }
+            return false;
+        } finally {
+            indexLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Rebuild the username Bloom filter from userMap, e.g. after loading data
+     * or after many renames have left stale names in it.
+     */
+    public void rebuildUsernameFilter() {
+        long stamp = indexLock.writeLock();
+        try {
+            resetUsernameFilter();
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+    }
+
+    private void resetUsernameFilter() {
+        usernameFilter = new ScalableBloomFilter(Math.max(1024, userMap.size()), 0.01);
+        for (String username : usernameIndex.keySet()) {
+            usernameFilter.add(username);
+        }
+        usernameFilterNegatives.reset();
+        usernameFilterFalsePositives.reset();
+    }
+
+    /**
+     * Observed false-positive rate of the username filter:
+     * false positives / all availability checks for names that were actually free.
+     */
+    public double getUsernameFilterFalsePositiveRate() {
+        long falsePositives = usernameFilterFalsePositives.sum();
+        long freeChecks = usernameFilterNegatives.sum() + falsePositives;
+        return freeChecks == 0 ? 0.0 : (double) falsePositives / freeChecks;
+    }
+
+    /**
+     * False-positive rate the username filter is expected to have at its current fill.
+     */
+    public double getUsernameFilterExpectedFalsePositiveRate() {
+        return usernameFilter.expectedFalsePositiveRate();
+    }
+
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+
+    /**
+     * Attach a log that is told about every later mutation, or null to detach.
+     */
+    public void setMutationLog(MutationLog mutationLog) {
+        long stamp = indexLock.writeLock();
+        try {
+            this.mutationLog = mutationLog;
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get a new id for a user or event, in the string form used by User and Event.
+     */
+    public String newId() {
+        return idGenerator.nextIdString();
+    }
+
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    /**
+     * Replace the id generator, e.g. with a different node id per process.
+     */
+    public void setIdGenerator(IdGenerator idGenerator) {
+        if (idGenerator == null) {
+            throw new IllegalArgumentException("Id generator cannot be null");
         }
-        return null;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Pool of shared title and participant strings, with memory-saved counters.
+     */
+    public StringPool getStringPool() {
+        return stringPool;
     }
 
     /**
-     * Get the userMap if needed externally.
+     * Get the userMap if needed externally. Not safe to use while other threads
+     * write unless inside readShared.
      */
     public MyMap<String, User> getUserMap() {
         return userMap;
@@ -104,37 +482,100 @@ public class DataStore {
      * Add a two-way (undirected) friendship between two userIds.
      */
     public void addFriendRelation(String userId1, String userId2) {
-        adjacencyList.putIfAbsent(userId1, new HashSet<>());
-        adjacencyList.putIfAbsent(userId2, new HashSet<>());
-        adjacencyList.get(userId1).add(userId2);
-        adjacencyList.get(userId2).add(userId1);
+        if (userId1 == null || userId2 == null) {
+            throw new IllegalArgumentException("User ids cannot be null");
+        }
+        long stamp = indexLock.writeLock();
+        try {
+            if (mutationLog != null) {
+                mutationLog.friendAdded(userId1, userId2);
+            }
+            adjacencyList.putIfAbsent(userId1, new HashSet<>());
+            adjacencyList.putIfAbsent(userId2, new HashSet<>());
+            boolean added = adjacencyList.get(userId1).add(userId2);
+            adjacencyList.get(userId2).add(userId1);
+            FriendGraphView view = friendView;
+            if (added && view != null) {
+                // Recorded against the frozen graph instead of refreezing it
+                view.added.putIfAbsent(userId1, new HashSet<>());
+                view.added.putIfAbsent(userId2, new HashSet<>());
+                view.added.get(userId1).add(userId2);
+                view.added.get(userId2).add(userId1);
+                view.addedEdges++;
+            }
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+        awaitLogged();
     }
 
     /**
      * Simple friend recommendation: returns a Set of userIds at distance=2.
+     * Runs on the frozen friend graph so the traversal only touches int arrays; when
+     * friendships added since the freeze touch the user or their friends, those are
+     * merged in. The graph is refrozen only once enough friendships have been added.
      */
     public Set<String> recommendFriends(String userId) {
-        Set<String> directFriends = adjacencyList.get(userId);
-        if (directFriends == null) {
-            return Collections.emptySet();
-        }
-        Set<String> recommended = new HashSet<>();
-        // For each friend, add their friends (excluding self & directFriends)
-        for (String friendId : directFriends) {
-            Set<String> friendsOfFriend = adjacencyList.get(friendId);
-            if (friendsOfFriend == null) continue;
-
-            for (String friendOfFriend : friendsOfFriend) {
-                if (!friendOfFriend.equals(userId) && !directFriends.contains(friendOfFriend)) {
-                    recommended.add(friendOfFriend);
-                }
+        return readLocked(indexLock, () -> {
+            FriendGraphView view = friendView;
+            if (view == null || view.addedEdges > Math.max(MIN_FRIEND_DELTA,
+                    view.graph.getEdgeCount() / FRIEND_DELTA_RATIO)) {
+                view = freezeFriendGraph();
+            }
+            CompactGraph<String> graph = view.graph;
+            int index = graph.indexOf(userId);
+            Set<String> friends = view.friendsOf(userId);
+            boolean touched = view.added.get(userId) != null;
+            for (String friendId : friends) {
+                touched |= view.added.get(friendId) != null;
             }
+            if (!touched) {
+                return index < 0 ? Collections.<String>emptySet() : new HashSet<>(graph.verticesAtDistanceTwo(index));
+            }
+            Set<String> result = new HashSet<>();
+            for (String friendId : friends) {
+                result.addAll(view.friendsOf(friendId));
+            }
+            result.remove(userId);
+            result.removeAll(friends);
+            return result;
+        });
+    }
+
+    /**
+     * Get the friend graph frozen into dense arrays.
+     * Users are renumbered in Reverse Cuthill-McKee order so friends get nearby indices.
+     * The snapshot is reused until a user or friendship is added, then frozen again under
+     * the read lock, so other readers carry on and no writer can change the adjacency list
+     * meanwhile.
+     */
+    public CompactGraph<String> getFriendGraph() {
+        CompactGraph<String> graph = optimisticRead(indexLock, () -> {
+            FriendGraphView view = friendView;
+            return view != null && view.added.size() == 0 ? view.graph : null;
+        });
+        if (graph != null) {
+            return graph;
         }
-        return recommended;
+        return readLocked(indexLock, () -> {
+            FriendGraphView current = friendView;
+            return current != null && current.added.size() == 0 ? current.graph : freezeFriendGraph().graph;
+        });
+    }
+
+    /**
+     * Freeze adjacencyList into a new view with nothing added. Caller holds indexLock;
+     * two readers may both freeze, and either result is current.
+     */
+    private FriendGraphView freezeFriendGraph() {
+        FriendGraphView view = new FriendGraphView(CompactGraph.fromAdjacency(adjacencyList, true));
+        friendView = view;
+        return view;
     }
 
     /**
-     * Expose adjacencyList if you need it externally.
+     * Expose adjacencyList if you need it externally. Not safe to use while other
+     * threads write unless inside readShared.
      */
     public MyMap<String, Set<String>> getAdjacencyList() {
         return adjacencyList;
@@ -145,146 +586,1796 @@ public class DataStore {
     // ===========================================
 
     /**
-     * Add an event for a specific user. Also store in eventMap for quick ID lookups.
+     * Add an event for a specific user. Also store in eventMap for quick ID lookups,
+     * and index it for every participant so invitees see it too.
+     * @throws IllegalArgumentException if the event is incomplete or ends before it starts
      */
     public void addEvent(String userId, Event event) {
-        // 1) Put event into eventMap
-        eventMap.put(event.getEventId(), event);
+        checkEvent(event);
+        if (partitionStore != null) {
+            long[] stamps = lockAll();
+            try {
+                // The owner's calendar must be resident to find an event this one replaces
+                ensureHydrated(userId);
+                Indexed indexed = indexEvent(userId, event, true);
+                placeEvent(userId, event, indexed);
+            } finally {
+                unlockAll(stamps);
+            }
+        } else {
+            EventStripe stripe = stripeOf(event.getEventId());
+            while (true) {
+                long[] stamps = lockUsers(readLocked(stripe.lock,
+                        () -> readLocked(indexLock, () -> usersTouchedByAdd(userId, event))), true);
+                try {
+                    Indexed indexed;
+                    long stripeStamp = stripe.lock.writeLock();
+                    try {
+                        // Usernames only need reading, unless a new version is recorded
+                        long stamp = multiVersion ? indexLock.writeLock() : indexLock.readLock();
+                        try {
+                            // An owner, invitee or username may have changed before the shards were held
+                            if (!holdsShards(stamps, usersTouchedByAdd(userId, event))) continue;
+                            indexed = indexEvent(userId, event, false);
+                        } finally {
+                            indexLock.unlock(stamp);
+                        }
+                    } finally {
+                        stripe.lock.unlockWrite(stripeStamp);
+                    }
+                    placeEvent(userId, event, indexed);
+                    break;
+                } finally {
+                    unlockShards(stamps);
+                }
+            }
+        }
+        awaitLogged();
+        LOG.debug("AddEvent: userId={}, eventTitle={}", userId, event.getTitle());
+    }
 
-        // 2) PriorityQueue logic
-        userDailyEvents.putIfAbsent(userId, new HashMap<>());
-        LocalDate date = event.getStartTime().toLocalDate();
+    /**
+     * Reject an event the calendars cannot hold, before anything is changed: every field
+     * the indexes read must be set, and the event must not end before it starts.
+     */
+    private static void checkEvent(Event event) {
+        if (event == null || event.getEventId() == null || event.getTitle() == null
+                || event.getStartTime() == null || event.getEndTime() == null
+                || event.getPriority() == null) {
+            throw new IllegalArgumentException("Incomplete event: "
+                    + (event == null ? null : event.getEventId()));
+        }
+        if (event.getEndTime().isBefore(event.getStartTime())) {
+            throw new IllegalArgumentException("Event " + event.getEventId() + " ends before it starts");
+        }
+    }
 
-        // If no PQ for this date, create one
-        userDailyEvents.get(userId).putIfAbsent(date, new PriorityQueue<>(new EventPriorityComparator()));
-        // Add event
-        userDailyEvents.get(userId).get(date).add(event);
+    /**
+     * Give back the pooled title and participant names of an event leaving the store.
+     * Caller holds textLock or every lock.
+     */
+    private void releaseStrings(Event event) {
+        stringPool.release(event.getTitle());
+        stringPool.releaseAll(event.getParticipants());
+    }
 
-        System.out.println("AddEvent: userId=" + userId + ", eventTitle=" + event.getTitle());
+    /**
+     * What indexEvent changed, for placeEvent to apply to the calendars.
+     */
+    private static final class Indexed {
+        Event replaced;
+        String replacedOwner;
+        List<String> replacedInvitees;
+        List<String> invitees;
     }
 
     /**
-     * Retrieve an event by ID.
+     * Users whose calendars adding the event changes: the owner, its invitees, and the
+     * owner and invitees of an event with the same id that it replaces.
      */
-    public Event getEventById(String eventId) {
-        return eventMap.get(eventId);
+    private List<String> usersTouchedByAdd(String userId, Event event) {
+        List<String> users = new ArrayList<>(resolveInvitees(userId, event));
+        users.add(userId);
+        EventStripe stripe = stripeOf(event.getEventId());
+        String previousOwner = stripe.owners.get(event.getEventId());
+        if (previousOwner != null) {
+            users.add(previousOwner);
+        }
+        List<String> previousInvitees = stripe.invitees.get(event.getEventId());
+        if (previousInvitees != null) {
+            users.addAll(previousInvitees);
+        }
+        return users;
     }
 
     /**
-     * Simple title-based search (linear).
+     * First half of addEvent: mutation log, eventMap, owners, title index, invitee lists
+     * and versions. The event has passed checkEvent, so once it is logged nothing here or
+     * in placeEvent fails. Caller holds the shards of every touched user, the event's
+     * stripe for writing and indexLock (for writing in multi-version mode); textLock is
+     * taken here unless the caller holds every lock.
      */
-    public List<Event> searchEventsByTitle(String title) {
-        List<Event> result = new ArrayList<>();
-        for (Event e : eventMap.values()) {
-            if (e.getTitle().toLowerCase().contains(title.toLowerCase())) {
-                result.add(e);
+    private Indexed indexEvent(String userId, Event event, boolean holdsAll) {
+        if (mutationLog != null) {
+            mutationLog.eventAdded(userId, event);
+        }
+        Indexed indexed = new Indexed();
+        EventStripe stripe = stripeOf(event.getEventId());
+
+        // 0) Share title and participant strings with earlier events, and index the title
+        Event previous = stripe.events.get(event.getEventId());
+        long stamp = holdsAll ? 0 : textLock.writeLock();
+        try {
+            String title = stringPool.intern(event.getTitle());
+            if (title != event.getTitle()) {
+                event.setTitle(title);
+            }
+            List<String> participants = stringPool.internAll(event.getParticipants());
+            if (participants != event.getParticipants()) {
+                event.setParticipants(participants);
+            }
+            if (previous != null) {
+                titleIndex.remove(previous);
+                releaseStrings(previous);
+            }
+            titleIndex.add(event, event.getTitle());
+        } finally {
+            if (!holdsAll) {
+                textLock.unlockWrite(stamp);
+            }
+        }
+
+        // 1) Put event into eventMap
+        indexed.replaced = stripe.events.put(event.getEventId(), event);
+        String previousOwner = stripe.owners.put(event.getEventId(), userId);
+        if (indexed.replaced != null) {
+            indexed.replacedOwner = previousOwner != null ? previousOwner : userId;
+            List<String> previousInvitees = stripe.invitees.remove(event.getEventId());
+            indexed.replacedInvitees = previousInvitees == null ? new ArrayList<>() : new ArrayList<>(previousInvitees);
+            if (partitionStore != null) {
+                partitionStore.eventRemoved(indexed.replacedOwner, indexed.replacedInvitees, event.getEventId());
             }
         }
-        return result;
+
+        // 2) Participant list
+        indexed.invitees = resolveInvitees(userId, event);
+        if (!indexed.invitees.isEmpty()) {
+            stripe.invitees.put(event.getEventId(), indexed.invitees);
+        }
+
+        if (partitionStore != null) {
+            partitionStore.eventAdded(userId, indexed.invitees, event);
+        }
+        if (multiVersion) {
+            recordVersion(event, userId, indexed.invitees);
+        }
+        return indexed;
     }
 
     /**
-     * Get events for a user on a specific date, sorted by priority/time in a PQ.
+     * Second half of addEvent: owner and invitee calendars and busy bitmaps.
+     * Caller holds the shards of every touched user.
      */
-    public List<Event> getUserEventsByDay(String userId, LocalDate day) {
-        MyMap<LocalDate, PriorityQueue<Event>> dailyMap = userDailyEvents.get(userId);
-        if (dailyMap == null) {
-            return Collections.emptyList();
+    private void placeEvent(String userId, Event event, Indexed indexed) {
+        Event replaced = indexed.replaced;
+        if (replaced != null) {
+            String oldOwner = indexed.replacedOwner;
+            Shard shard = shardOf(oldOwner);
+            UserCalendar calendar = shard.owned.get(oldOwner);
+            if (calendar != null) {
+                calendar.remove(replaced);
+                if (calendar.isEmpty()) {
+                    shard.owned.remove(oldOwner);
+                }
+            }
+            List<String> affected = removeInvitations(replaced, indexed.replacedInvitees);
+            affected.add(oldOwner);
+            refreshAvailability(affected, replaced);
         }
-        PriorityQueue<Event> pq = dailyMap.get(day);
-        if (pq == null) {
-            return Collections.emptyList();
+
+        // 3) Owner's calendar (priority queue per day, interval tree, timeline)
+        Shard shard = shardOf(userId);
+        calendarOf(shard.owned, userId).add(event);
+        shard.availability.markBusy(userId, event.getStartTime(), event.getEndTime());
+
+        // 4) Participant index
+        addInvitations(event, indexed.invitees);
+    }
+
+    /**
+     * Index an event under each invitee. In lazy hydration mode only hydrated invitees
+     * get a calendar entry; the others read it from the PartitionStore when they are
+     * hydrated.
+     */
+    private void addInvitations(Event event, List<String> invitees) {
+        for (String inviteeId : invitees) {
+            if (!isResident(inviteeId)) continue;
+            Shard shard = shardOf(inviteeId);
+            calendarOf(shard.invited, inviteeId).add(event);
+            shard.availability.markBusy(inviteeId, event.getStartTime(), event.getEndTime());
         }
-        // Copy to a list to avoid modifying the original PQ order
-        return new ArrayList<>(pq.toList());
     }
 
     /**
-     * Expose eventMap if needed externally.
+     * userIds of the event's participants other than its owner, without duplicates.
+     * Participants are usernames; unknown names are skipped.
      */
-    public MyMap<String, Event> getEventMap() {
-        return eventMap;
+    private List<String> resolveInvitees(String ownerId, Event event) {
+        List<String> participants = event.getParticipants();
+        if (participants == null || participants.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> invitees = new ArrayList<>();
+        for (String name : participants) {
+            User invitee = usernameIndex.get(name.trim());
+            if (invitee == null) continue;
+            String inviteeId = invitee.getUserId();
+            if (inviteeId.equals(ownerId) || invitees.contains(inviteeId)) continue;
+            invitees.add(inviteeId);
+        }
+        return invitees;
     }
 
-    // ===========================================
-    // ===== PRIORITY QUEUE STRUCTURE EXAMPLE ====
-    // ===========================================
-    // Already embedded above in addEvent/getUserEventsByDay
+    /**
+     * Undo addInvitations.
+     * @return the userIds the event was removed from (a new, modifiable list)
+     */
+    private List<String> removeInvitations(Event event, List<String> invitees) {
+        if (invitees == null) {
+            return new ArrayList<>();
+        }
+        for (String inviteeId : invitees) {
+            Shard shard = shardOf(inviteeId);
+            UserCalendar calendar = shard.invited.get(inviteeId);
+            if (calendar != null) {
+                calendar.remove(event);
+                if (calendar.isEmpty()) {
+                    shard.invited.remove(inviteeId);
+                }
+            }
+        }
+        return new ArrayList<>(invitees);
+    }
 
-    // ===========================================
-    // ========= STACK USAGE METHODS =============
-    // ===========================================
+    /**
+     * Recompute the busy bitmaps of the given users on every day a removed event touched,
+     * since another event may still cover the same slots.
+     */
+    private void refreshAvailability(List<String> userIds, Event removed) {
+        LocalDate lastDay = lastDayOf(removed);
+        for (String id : userIds) {
+            if (!isResident(id)) continue;
+            for (LocalDate day = removed.getStartTime().toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+                LocalDateTime dayStart = day.atStartOfDay();
+                shardOf(id).availability.rebuildDay(id, day, conflictsOf(id, dayStart, dayStart.plusDays(1)));
+            }
+        }
+    }
 
     /**
-     * For page transitions or undo operations, we store them in a stack.
-     * You can store Pane objects, Operation objects, or any type you prefer.
+     * The last day an event covers any part of.
      */
-    public void pushToStack(Object item) {
-        stack.push(item);
+    private static LocalDate lastDayOf(Event event) {
+        return event.getEndTime().isAfter(event.getStartTime())
+                ? event.getEndTime().minusNanos(1).toLocalDate()
+                : event.getStartTime().toLocalDate();
     }
 
-    public Object popFromStack() {
-        if (!stack.isEmpty()) {
-            return stack.pop();
-        }
-        return null;
+    /**
+     * Find the first k non-overlapping slots of the given length, between two dates
+     * (inclusive), in which none of the users has an owned or invited event.
+     * Works on 15-minute slots; a slot never crosses midnight.
+     * @return start times of the free slots, in time order
+     */
+    public List<LocalDateTime> findCommonFreeSlots(List<String> userIds, LocalDate from, LocalDate to,
+                                                   Duration length, int k) {
+        return findCommonFreeSlots(userIds, from, to, length, AvailabilityIndex.SLOTS_PER_DAY, k);
     }
 
-    public boolean isStackEmpty() {
-        return stack.isEmpty();
+    /**
+     * findCommonFreeSlots for slots that end by latestEnd on the day they start, e.g. so
+     * the end fits a form with a single date. latestEnd is rounded down to a 15-minute slot.
+     * @return start times of the free slots, in time order
+     */
+    public List<LocalDateTime> findCommonFreeSlots(List<String> userIds, LocalDate from, LocalDate to,
+                                                   Duration length, LocalTime latestEnd, int k) {
+        int endSlot = (latestEnd.getHour() * 60 + latestEnd.getMinute()) / AvailabilityIndex.SLOT_MINUTES;
+        return findCommonFreeSlots(userIds, from, to, length, endSlot, k);
     }
 
-    // Example usage: push an operation or page name into stack, pop to revert.
-    
-    // Remove events
-    public boolean removeEvent(String userId, String eventId) {
-        // Check if events exist
-        Event eventToRemove = eventMap.get(eventId);
-        if (eventToRemove == null) {
-            System.out.println("RemoveEvent: Event not found, eventId=" + eventId);
-            return false;
-        }
-        
-        // Get the date of the event
-        LocalDate eventDate = eventToRemove.getStartTime().toLocalDate();
-        
-        // Check if the user has any events
-        MyMap<LocalDate, PriorityQueue<Event>> userEvents = userDailyEvents.get(userId);
-        if (userEvents == null) {
-            System.out.println("RemoveEvent: No events for userId=" + userId);
-            return false;
+    private List<LocalDateTime> findCommonFreeSlots(List<String> userIds, LocalDate from, LocalDate to,
+                                                    Duration length, int endSlot, int k) {
+        int slotsNeeded = (int) ((length.toMinutes() + AvailabilityIndex.SLOT_MINUTES - 1)
+                / AvailabilityIndex.SLOT_MINUTES);
+        if (partitionStore != null) {
+            long[] stamps = lockAll();
+            try {
+                ensureHydrated(userIds);
+                return freeSlotsOf(userIds, from, to, slotsNeeded, endSlot, k);
+            } finally {
+                unlockAll(stamps);
+            }
         }
-        
-        // Check if the user has events on that date
-        PriorityQueue<Event> eventsOnDate = userEvents.get(eventDate);
-        if (eventsOnDate == null) {
-            System.out.println("RemoveEvent: No events for date=" + eventDate);
-            return false;
+        long[] stamps = lockUsers(userIds, false);
+        try {
+            return freeSlotsOf(userIds, from, to, slotsNeeded, endSlot, k);
+        } finally {
+            unlockShards(stamps);
         }
-        
-        // Remove events from priority queue
-        boolean removed = eventsOnDate.removeIf(event -> event.getEventId().equals(eventId));
-        
-        // If the priority queue is now empty, remove it from the map
-        if (eventsOnDate.isEmpty()) {
-            userEvents.remove(eventDate);
-            
-            // If the user has no more events, remove their entry from userDailyEvents
-            if (userEvents.isEmpty()) {
-                userDailyEvents.remove(userId);
+    }
+
+    private List<LocalDateTime> freeSlotsOf(List<String> userIds, LocalDate from, LocalDate to,
+                                            int slotsNeeded, int endSlot, int k) {
+        List<SparseIntArray<long[]>> calendars = new ArrayList<>();
+        for (String userId : userIds) {
+            SparseIntArray<long[]> days = shardOf(userId).availability.daysOf(userId);
+            if (days != null) {
+                calendars.add(days);
             }
         }
-        
-        // Remove from eventMap
-        if (removed) {
-            eventMap.remove(eventId);
-            System.out.println("RemoveEvent: Successfully removed eventId=" + eventId + ", title=" + eventToRemove.getTitle());
-        } else {
-            System.out.println("RemoveEvent: Event not found in user's events, eventId=" + eventId);
-        }
-        
-        return removed;
+        return AvailabilityIndex.findCommonFreeSlots(calendars, from, to, slotsNeeded, endSlot, k);
     }
-}
 
+    /**
+     * Retrieve an event by ID.
+     * In lazy hydration mode only events of hydrated users are found.
+     */
+    public Event getEventById(String eventId) {
+        EventStripe stripe = stripeOf(eventId);
+        return optimisticRead(stripe.lock, () -> stripe.events.get(eventId));
+    }
+
+    /**
+     * Case-insensitive title substring search through the trigram index.
+     * In lazy hydration mode only events of hydrated users are found.
+     */
+    public List<Event> searchEventsByTitle(String title) {
+        return readLocked(textLock, () -> titleIndex.search(title));
+    }
+
+    /**
+     * Get events for a user on a specific date, sorted by priority/time in a PQ.
+     * Includes events the user is invited to, merged in the same order.
+     */
+    public List<Event> getUserEventsByDay(String userId, LocalDate day) {
+        return readUser(userId, true, () -> {
+            Shard shard = shardOf(userId);
+            UserCalendar owned = shard.owned.get(userId);
+            UserCalendar invited = shard.invited.get(userId);
+            List<List<Event>> runs = new ArrayList<>(2);
+            if (owned != null) runs.add(owned.getEventsByDay(day));
+            if (invited != null) runs.add(invited.getEventsByDay(day));
+            return mergeSorted(runs, PRIORITY_ORDER, Integer.MAX_VALUE);
+        });
+    }
 
+    /**
+     * Check whether [start, end) overlaps any of the user's own or invited events,
+     * across day boundaries. O(log n) in the number of the user's events.
+     */
+    public boolean hasTimeConflict(String userId, LocalDateTime start, LocalDateTime end) {
+        return readUser(userId, false, () -> {
+            Shard shard = shardOf(userId);
+            UserCalendar owned = shard.owned.get(userId);
+            if (owned != null && owned.overlapsAny(start, end)) {
+                return true;
+            }
+            UserCalendar invited = shard.invited.get(userId);
+            return invited != null && invited.overlapsAny(start, end);
+        });
+    }
+
+    /**
+     * List the user's own and invited events overlapping [start, end), ordered by start time.
+     * O(log n + k) for k results.
+     */
+    public List<Event> findConflictingEvents(String userId, LocalDateTime start, LocalDateTime end) {
+        return readUser(userId, false, () -> conflictsOf(userId, start, end));
+    }
+
+    private List<Event> conflictsOf(String userId, LocalDateTime start, LocalDateTime end) {
+        Shard shard = shardOf(userId);
+        UserCalendar owned = shard.owned.get(userId);
+        UserCalendar invited = shard.invited.get(userId);
+        List<List<Event>> runs = new ArrayList<>(2);
+        if (owned != null) runs.add(owned.findOverlapping(start, end));
+        if (invited != null) runs.add(invited.findOverlapping(start, end));
+        return mergeSorted(runs, TIME_ORDER, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the user's own and invited events starting in [from, to), in start-time order.
+     * O(log n + k) through the per-user skip lists; replaces one getUserEventsByDay call per day.
+     */
+    public List<Event> getUserEventsInRange(String userId, LocalDateTime from, LocalDateTime to) {
+        return readUser(userId, false, () -> {
+            Shard shard = shardOf(userId);
+            UserCalendar owned = shard.owned.get(userId);
+            UserCalendar invited = shard.invited.get(userId);
+            List<List<Event>> runs = new ArrayList<>(2);
+            if (owned != null) runs.add(owned.range(from, to, Integer.MAX_VALUE));
+            if (invited != null) runs.add(invited.range(from, to, Integer.MAX_VALUE));
+            return mergeSorted(runs, TIME_ORDER, Integer.MAX_VALUE);
+        });
+    }
+
+    /**
+     * Paged variant of getUserEventsInRange.
+     * @param cursor null for the first page, otherwise the previous page's next cursor
+     * @param pageSize maximum number of events per page
+     */
+    public EventPage getUserEventsInRange(String userId, LocalDateTime from, LocalDateTime to,
+                                          EventPage.Cursor cursor, int pageSize) {
+        if (pageSize <= 0) {
+            return new EventPage(Collections.emptyList(), null);
+        }
+        List<Event> events = readUser(userId, false, () -> {
+            Shard shard = shardOf(userId);
+            // Each source contributes at most pageSize + 1 events; one extra tells whether another page follows
+            Event probe = cursor == null ? null
+                    : new Event(cursor.getEventId(), null, cursor.getStartTime(), null, null, null);
+            List<List<Event>> runs = new ArrayList<>(2);
+            for (UserCalendar calendar : new UserCalendar[] { shard.owned.get(userId), shard.invited.get(userId) }) {
+                if (calendar == null) continue;
+                runs.add(probe == null
+                        ? calendar.range(from, to, pageSize + 1)
+                        : calendar.rangeAfter(probe, to, pageSize + 1));
+            }
+            return mergeSorted(runs, TIME_ORDER, pageSize + 1);
+        });
+        if (events.size() <= pageSize) {
+            return new EventPage(events, null);
+        }
+        events = new ArrayList<>(events.subList(0, pageSize));
+        Event last = events.get(pageSize - 1);
+        return new EventPage(events, new EventPage.Cursor(last.getStartTime(), last.getEventId()));
+    }
+
+    /**
+     * k-way merge of runs that are each already sorted by order, keeping at most limit events.
+     * Uses a heap of run heads instead of concatenating and re-sorting.
+     */
+    private static List<Event> mergeSorted(List<List<Event>> runs, Comparator<Event> order, int limit) {
+        runs.removeIf(List::isEmpty);
+        if (runs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (runs.size() == 1) {
+            List<Event> only = runs.get(0);
+            return new ArrayList<>(only.size() <= limit ? only : only.subList(0, limit));
+        }
+        // Heap entry: {run index, position in run}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(runs.size(),
+                (a, b) -> order.compare(runs.get(a[0]).get(a[1]), runs.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int r = 0; r < runs.size(); r++) {
+            heads.add(new int[] { r, 0 });
+            total += runs.get(r).size();
+        }
+        List<Event> merged = new ArrayList<>(Math.min(total, limit));
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.remove();
+            List<Event> run = runs.get(head[0]);
+            merged.add(run.get(head[1]));
+            if (++head[1] < run.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Copy of every event, in no particular order. Each event stripe is copied under its
+     * own lock; inside readShared the copy is of one point in time. In lazy hydration
+     * mode only events of hydrated users are included.
+     */
+    public List<Event> getEvents() {
+        List<Event> events = new ArrayList<>();
+        for (EventStripe stripe : eventStripes) {
+            events.addAll(optimisticRead(stripe.lock, stripe.events::values));
+        }
+        return events;
+    }
+
+    public int getEventCount() {
+        int count = 0;
+        for (EventStripe stripe : eventStripes) {
+            count += optimisticRead(stripe.lock, stripe.events::size);
+        }
+        return count;
+    }
+
+    /**
+     * Get the userId of the user who created an event, or null if it does not exist.
+     * In lazy hydration mode an event that is not resident is looked up in the
+     * PartitionStore.
+     */
+    public String getEventOwner(String eventId) {
+        EventStripe stripe = stripeOf(eventId);
+        String ownerId = optimisticRead(stripe.lock, () -> stripe.owners.get(eventId));
+        PartitionStore store = partitionStore;
+        return ownerId != null || store == null ? ownerId : store.ownerOf(eventId);
+    }
+
+    /**
+     * Get the userIds an event is indexed under as an invitee (empty if none).
+     */
+    public List<String> getEventInvitees(String eventId) {
+        EventStripe stripe = stripeOf(eventId);
+        List<String> invitees = optimisticRead(stripe.lock, () -> stripe.invitees.get(eventId));
+        return invitees == null ? Collections.emptyList() : Collections.unmodifiableList(invitees);
+    }
+
+    // ===========================================
+    // ============ LAZY HYDRATION ===============
+    // ===========================================
+
+    /**
+     * Switch to lazy hydration: drop every resident event and from now on load a user's
+     * calendars from store on first use. store must already hold every event (e.g. written
+     * by UserSegmentStore.write), since later mutations are only passed on as they happen.
+     * @param store per-user event storage
+     * @param budgetBytes estimated heap for hydrated calendars (RESIDENT_EVENT_BYTES per
+     *                    entry) above which the least recently used users are evicted
+     */
+    public void enableLazyHydration(PartitionStore store, long budgetBytes) {
+        if (store == null || budgetBytes <= 0) {
+            throw new IllegalArgumentException("Partition store and a positive budget are required");
+        }
+        if (multiVersion) {
+            throw new IllegalStateException("Lazy hydration does not work in multi-version mode");
+        }
+        long[] stamps = lockAll();
+        try {
+            partitionStore = store;
+            hydrationBudgetBytes = budgetBytes;
+            hydratedUsers = new IdKeyedMap<>();
+            resetEventStripes();
+            titleIndex = new TrigramIndex<>();
+            stringPool = new StringPool();
+            resetShards();
+        } finally {
+            unlockAll(stamps);
+        }
+        LOG.info("LazyHydration: enabled with a budget of {} KB", budgetBytes >> 10);
+    }
+
+    public PartitionStore getPartitionStore() {
+        return partitionStore;
+    }
+
+    /**
+     * Make sure a user's calendars are resident, e.g. at login so the first
+     * calendar render does not pay for the load. No-op unless lazy hydration is on.
+     */
+    public void hydrateUser(String userId) {
+        if (partitionStore == null) {
+            return;
+        }
+        long[] stamps = lockAll();
+        try {
+            ensureHydrated(userId);
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    public boolean isHydrated(String userId) {
+        return readLocked(indexLock, () -> hydratedUsers != null && hydratedUsers.containsKey(userId));
+    }
+
+    public int getHydratedUserCount() {
+        return readLocked(indexLock, () -> hydratedUsers == null ? 0 : hydratedUsers.size());
+    }
+
+    public long getHydrationCount() {
+        return readLocked(indexLock, () -> hydrations);
+    }
+
+    public long getEvictionCount() {
+        return readLocked(indexLock, () -> evictions);
+    }
+
+    /**
+     * Estimated heap held by hydrated calendars; an event shared by two hydrated users
+     * counts twice.
+     */
+    public long getResidentBytes() {
+        // Lazy mode changes calendars only with every lock held, so indexLock is enough
+        return readLocked(indexLock, this::residentBytes);
+    }
+
+    private long residentBytes() {
+        if (hydratedUsers == null) {
+            return 0;
+        }
+        long entries = 0;
+        for (String userId : hydratedUsers.keySet()) {
+            Shard shard = shardOf(userId);
+            UserCalendar owned = shard.owned.get(userId);
+            UserCalendar invited = shard.invited.get(userId);
+            entries += (owned == null ? 0 : owned.size()) + (invited == null ? 0 : invited.size());
+        }
+        return entries * RESIDENT_EVENT_BYTES;
+    }
+
+    /**
+     * True if the user's calendars can be read and updated in memory.
+     */
+    private boolean isResident(String userId) {
+        return partitionStore == null || hydratedUsers.containsKey(userId);
+    }
+
+    private void ensureHydrated(String userId) {
+        if (partitionStore != null) {
+            ensureHydrated(Collections.singletonList(userId));
+        }
+    }
+
+    /**
+     * Hydrate every given user, marking them most recently used, then evict others
+     * while over budget. The given users are never evicted by this call.
+     * Caller holds every lock (lockAll).
+     */
+    private void ensureHydrated(List<String> userIds) {
+        if (partitionStore == null) {
+            return;
+        }
+        boolean loaded = false;
+        for (String userId : userIds) {
+            if (hydratedUsers.get(userId) == null) {
+                hydrate(userId);
+                loaded = true;
+            }
+            hydratedUsers.get(userId).set(useClock.incrementAndGet());
+        }
+        if (loaded) {
+            evictIdle(userIds);
+        }
+    }
+
+    /**
+     * Load a user's partition and index it like addEvent would. An event already
+     * resident through another hydrated user is shared rather than loaded twice.
+     */
+    private void hydrate(String userId) {
+        PartitionStore.Partition partition = partitionStore.load(userId);
+        List<Event> owned = new ArrayList<>();
+        List<Event> invited = new ArrayList<>();
+        for (int i = 0; i < partition.size(); i++) {
+            String ownerId = partition.getOwnerId(i);
+            EventStripe stripe = stripeOf(partition.getEvent(i).getEventId());
+            Event event = stripe.events.get(partition.getEvent(i).getEventId());
+            if (event == null) {
+                event = partition.getEvent(i);
+                event.setTitle(stringPool.intern(event.getTitle()));
+                event.setParticipants(stringPool.internAll(event.getParticipants()));
+                stripe.events.put(event.getEventId(), event);
+                stripe.owners.put(event.getEventId(), ownerId);
+                titleIndex.add(event, event.getTitle());
+                List<String> invitees = resolveInvitees(ownerId, event);
+                if (!invitees.isEmpty()) {
+                    stripe.invitees.put(event.getEventId(), invitees);
+                }
+            }
+            (ownerId.equals(userId) ? owned : invited).add(event);
+        }
+        UserCalendar ownedCalendar = buildCalendar(owned);
+        UserCalendar invitedCalendar = buildCalendar(invited);
+        Shard shard = shardOf(userId);
+        if (ownedCalendar != null) {
+            shard.owned.put(userId, ownedCalendar);
+        }
+        if (invitedCalendar != null) {
+            shard.invited.put(userId, invitedCalendar);
+        }
+        shard.availability.putDays(userId, AvailabilityIndex.buildDays(owned, invited));
+        hydratedUsers.put(userId, new AtomicLong());
+        hydrations++;
+        LOG.debug("HydrateUser: userId={}, events={}", userId, partition.size());
+    }
+
+    /**
+     * Evict least recently used users, other than pinned ones, while over budget.
+     */
+    private void evictIdle(List<String> pinned) {
+        if (residentBytes() <= hydrationBudgetBytes) {
+            return;
+        }
+        List<String> leastRecentFirst = new ArrayList<>(hydratedUsers.keySet());
+        leastRecentFirst.sort(Comparator.comparingLong(userId -> hydratedUsers.get(userId).get()));
+        for (String userId : leastRecentFirst) {
+            if (pinned.contains(userId)) continue;
+            evict(userId);
+            if (residentBytes() <= hydrationBudgetBytes) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drop a user's calendars and busy bitmaps, and every event no other hydrated
+     * user still references. Nothing is lost: the PartitionStore already has it all.
+     */
+    private void evict(String userId) {
+        hydratedUsers.remove(userId);
+        Shard shard = shardOf(userId);
+        UserCalendar owned = shard.owned.remove(userId);
+        UserCalendar invited = shard.invited.remove(userId);
+        shard.availability.putDays(userId, new SparseIntArray<>());
+        for (UserCalendar calendar : new UserCalendar[] { owned, invited }) {
+            if (calendar == null) continue;
+            for (Event event : calendar.events()) {
+                if (!isReferencedByHydratedUser(event.getEventId())) {
+                    EventStripe stripe = stripeOf(event.getEventId());
+                    stripe.events.remove(event.getEventId());
+                    stripe.owners.remove(event.getEventId());
+                    stripe.invitees.remove(event.getEventId());
+                    titleIndex.remove(event);
+                    releaseStrings(event);
+                }
+            }
+        }
+        evictions++;
+    }
+
+    private boolean isReferencedByHydratedUser(String eventId) {
+        EventStripe stripe = stripeOf(eventId);
+        String ownerId = stripe.owners.get(eventId);
+        if (ownerId != null && hydratedUsers.containsKey(ownerId)) {
+            return true;
+        }
+        List<String> invitees = stripe.invitees.get(eventId);
+        if (invitees != null) {
+            for (String inviteeId : invitees) {
+                if (hydratedUsers.containsKey(inviteeId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ===========================================
+    // ============ LOCKING ======================
+    // ===========================================
+
+    /**
+     * Run reader while no other thread can change users, friendships or events, e.g. to
+     * copy them consistently (Snapshot.capture). reader may use the exposing getters
+     * (getUserMap, getEvents, getAdjacencyList) and getEventOwner/getEventInvitees,
+     * but must not call methods that write.
+     */
+    public <T> T readShared(Supplier<T> reader) {
+        long[] stamps = new long[EVENT_STRIPES];
+        for (int i = 0; i < EVENT_STRIPES; i++) {
+            stamps[i] = eventStripes[i].lock.readLock();
+        }
+        try {
+            return readLocked(indexLock, reader);
+        } finally {
+            for (int i = EVENT_STRIPES - 1; i >= 0; i--) {
+                eventStripes[i].lock.unlockRead(stamps[i]);
+            }
+        }
+    }
+
+    private EventStripe stripeOf(String eventId) {
+        return eventStripes[stripeIndex(eventId)];
+    }
+
+    private int stripeIndex(String eventId) {
+        int h = eventId.hashCode();
+        return (h ^ (h >>> 16)) & (EVENT_STRIPES - 1);
+    }
+
+    /**
+     * Wait until this thread's mutation log records are durable; called by every
+     * mutator once its locks are released.
+     */
+    private void awaitLogged() {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.awaitDurable();
+        }
+    }
+
+    private Shard shardOf(String userId) {
+        return shards[shardIndex(userId)];
+    }
+
+    private int shardIndex(String userId) {
+        int h = userId.hashCode();
+        return (h ^ (h >>> 16)) & (SHARDS - 1);
+    }
+
+    /**
+     * Lock the shards of the given users in index order, for writing or reading.
+     * @return one stamp per shard, 0 where not locked; release with unlockShards
+     */
+    private long[] lockUsers(List<String> userIds, boolean write) {
+        long[] stamps = new long[SHARDS];
+        boolean[] wanted = new boolean[SHARDS];
+        for (String userId : userIds) {
+            wanted[shardIndex(userId)] = true;
+        }
+        for (int i = 0; i < SHARDS; i++) {
+            if (wanted[i]) {
+                stamps[i] = write ? shards[i].lock.writeLock() : shards[i].lock.readLock();
+            }
+        }
+        return stamps;
+    }
+
+    private boolean holdsShards(long[] stamps, List<String> userIds) {
+        for (String userId : userIds) {
+            if (stamps[shardIndex(userId)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void unlockShards(long[] stamps) {
+        for (int i = SHARDS - 1; i >= 0; i--) {
+            if (stamps[i] != 0) {
+                shards[i].lock.unlock(stamps[i]);
+            }
+        }
+    }
+
+    /**
+     * Write-lock every shard, every event stripe, indexLock and textLock, in lock order,
+     * for bulk loads and lazy hydration mode.
+     * @return SHARDS shard stamps, EVENT_STRIPES stripe stamps, then the indexLock and
+     *         textLock stamps; release with unlockAll
+     */
+    private long[] lockAll() {
+        long[] stamps = new long[SHARDS + EVENT_STRIPES + 2];
+        for (int i = 0; i < SHARDS; i++) {
+            stamps[i] = shards[i].lock.writeLock();
+        }
+        for (int i = 0; i < EVENT_STRIPES; i++) {
+            stamps[SHARDS + i] = eventStripes[i].lock.writeLock();
+        }
+        stamps[SHARDS + EVENT_STRIPES] = indexLock.writeLock();
+        stamps[SHARDS + EVENT_STRIPES + 1] = textLock.writeLock();
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        textLock.unlockWrite(stamps[SHARDS + EVENT_STRIPES + 1]);
+        indexLock.unlockWrite(stamps[SHARDS + EVENT_STRIPES]);
+        for (int i = EVENT_STRIPES - 1; i >= 0; i--) {
+            eventStripes[i].lock.unlockWrite(stamps[SHARDS + i]);
+        }
+        for (int i = SHARDS - 1; i >= 0; i--) {
+            shards[i].lock.unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * Drop every event id map entry; caller holds every lock.
+     */
+    private void resetEventStripes() {
+        for (EventStripe stripe : eventStripes) {
+            stripe.events = new IdKeyedMap<>();
+            stripe.owners = new IdKeyedMap<>();
+            stripe.invitees = new IdKeyedMap<>();
+        }
+    }
+
+    /**
+     * Drop every user's calendars and busy bitmaps; caller holds every lock.
+     */
+    private void resetShards() {
+        for (Shard shard : shards) {
+            shard.owned = new IdKeyedMap<>();
+            shard.invited = new IdKeyedMap<>();
+            shard.availability = new AvailabilityIndex();
+        }
+    }
+
+    /**
+     * Run a query on one user's calendars under their shard lock; in lazy hydration
+     * mode with every lock held, after hydrating the user.
+     * @param optimistic first try without locking (only for queries that cannot loop
+     *                   on a half-written structure: hash and array lookups)
+     */
+    private <T> T readUser(String userId, boolean optimistic, Supplier<T> query) {
+        if (partitionStore != null) {
+            // Already hydrated: the shard's read lock keeps the user from being evicted
+            StampedLock lock = shardOf(userId).lock;
+            long stamp = lock.readLock();
+            try {
+                if (touchIfHydrated(userId)) {
+                    return query.get();
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            long[] stamps = lockAll();
+            try {
+                ensureHydrated(userId);
+                return query.get();
+            } finally {
+                unlockAll(stamps);
+            }
+        }
+        StampedLock lock = shardOf(userId).lock;
+        return optimistic ? optimisticRead(lock, query) : readLocked(lock, query);
+    }
+
+    /**
+     * Mark a hydrated user as just used. Caller holds the user's shard.
+     * @return false if the user is not hydrated
+     */
+    private boolean touchIfHydrated(String userId) {
+        return readLocked(indexLock, () -> {
+            AtomicLong lastUse = hydratedUsers.get(userId);
+            if (lastUse == null) {
+                return false;
+            }
+            lastUse.set(useClock.incrementAndGet());
+            return true;
+        });
+    }
+
+    /**
+     * Run query without locking and keep the result if no writer got the lock meanwhile;
+     * otherwise, or if the query tripped over a half-written structure, run it again
+     * under the read lock.
+     */
+    private static <T> T optimisticRead(StampedLock lock, Supplier<T> query) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = query.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Raced with a writer; fall through to the read lock
+            }
+        }
+        return readLocked(lock, query);
+    }
+
+    private static <T> T readLocked(StampedLock lock, Supplier<T> query) {
+        long stamp = lock.readLock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // ===========================================
+    // ============ MULTI-VERSION READS ==========
+    // ===========================================
+
+    /**
+     * Switch to multi-version mode: from now on every addEvent and removeEvent bumps the
+     * version, and openSnapshot gives point-in-time views. Not available with lazy hydration.
+     */
+    public void enableMultiVersion() {
+        long[] stamps = lockAll();
+        try {
+            if (partitionStore != null) {
+                throw new IllegalStateException("Multi-version mode does not work with lazy hydration");
+            }
+            if (multiVersion) {
+                return;
+            }
+            resetVersions();
+            multiVersion = true;
+        } finally {
+            unlockAll(stamps);
+        }
+        LOG.info("MultiVersion: enabled at version {} with {} events", version, versionCount);
+    }
+
+    public boolean isMultiVersion() {
+        return multiVersion;
+    }
+
+    /**
+     * Version of the latest event mutation; each addEvent and removeEvent adds one.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Open a read-only view of the events as they are now. Later mutations do not change
+     * it and it does not hold them up; versions it can see are kept until it is closed.
+     */
+    public DataStoreSnapshot openSnapshot() {
+        if (!multiVersion) {
+            throw new IllegalStateException("Multi-version mode is off; call enableMultiVersion first");
+        }
+        long stamp = indexLock.readLock();
+        try {
+            synchronized (openSnapshots) {
+                openSnapshots.merge(version, 1, Integer::sum);
+            }
+            return new DataStoreSnapshot(this, version, versionLog, versionCount, versionChains);
+        } finally {
+            indexLock.unlockRead(stamp);
+        }
+    }
+
+    public int getOpenSnapshotCount() {
+        synchronized (openSnapshots) {
+            int open = 0;
+            for (int n : openSnapshots.values()) {
+                open += n;
+            }
+            return open;
+        }
+    }
+
+    /**
+     * Versions no longer current that are still kept, for open snapshots or until the
+     * next collection.
+     */
+    public int getRetainedVersionCount() {
+        return readLocked(indexLock, () -> supersededVersions);
+    }
+
+    public long getVersionCollectionCount() {
+        return readLocked(indexLock, () -> collections);
+    }
+
+    /**
+     * Called by DataStoreSnapshot.close. When the oldest snapshot goes, the versions
+     * only it could see are collected, once there are enough to be worth a pass.
+     */
+    void closeSnapshot(DataStoreSnapshot snapshot) {
+        long closed = snapshot.getVersion();
+        boolean wasOldest;
+        synchronized (openSnapshots) {
+            wasOldest = openSnapshots.firstKey() == closed;
+            if (openSnapshots.merge(closed, -1, Integer::sum) == 0) {
+                openSnapshots.remove(closed);
+            } else {
+                wasOldest = false;
+            }
+        }
+        if (wasOldest) {
+            long stamp = indexLock.writeLock();
+            try {
+                collectThreshold = Math.max(MIN_COLLECT, versionCount / 8);
+                if (supersededVersions >= collectThreshold) {
+                    collectVersions();
+                }
+            } finally {
+                indexLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Newest version of an event in the chains a snapshot opened with; the chain's
+     * previous links lead to older versions.
+     */
+    EventVersion versionChain(MyMap<String, EventVersion> chains, String eventId) {
+        return optimisticRead(indexLock, () -> chains.get(eventId));
+    }
+
+    /**
+     * Start a fresh version log holding the current events. Caller holds indexLock
+     * for writing; snapshots already open keep the log and chains they have.
+     */
+    private void resetVersions() {
+        version++;
+        int events = 0;
+        for (EventStripe stripe : eventStripes) {
+            events += stripe.events.size();
+        }
+        versionLog = new EventVersion[Math.max(16, events + events / 2)];
+        versionCount = 0;
+        versionChains = new IdKeyedMap<>();
+        supersededVersions = 0;
+        for (EventStripe stripe : eventStripes) {
+            for (Event event : stripe.events.values()) {
+                String eventId = event.getEventId();
+                EventVersion current = new EventVersion(event, stripe.owners.get(eventId),
+                        stripe.invitees.get(eventId), version, null);
+                versionChains.put(eventId, current);
+                appendVersion(current);
+            }
+        }
+        collectThreshold = Math.max(MIN_COLLECT, versionCount / 8);
+    }
+
+    /**
+     * New current version of an added or replaced event. Caller holds indexLock for writing.
+     */
+    private void recordVersion(Event event, String ownerId, List<String> invitees) {
+        long v = ++version;
+        EventVersion previous = versionChains.get(event.getEventId());
+        if (previous != null && previous.isCurrent()) {
+            previous.to = v;
+            supersededVersions++;
+        }
+        // With no snapshot open, nobody can see the previous version any more
+        EventVersion current = new EventVersion(event, ownerId, invitees, v,
+                hasOpenSnapshots() ? previous : null);
+        versionChains.put(event.getEventId(), current);
+        appendVersion(current);
+        if (supersededVersions >= collectThreshold) {
+            collectVersions();
+        }
+    }
+
+    /**
+     * End the current version of a removed event. Caller holds indexLock for writing.
+     */
+    private void recordRemoval(String eventId) {
+        EventVersion current = versionChains.get(eventId);
+        if (current == null || !current.isCurrent()) {
+            return;
+        }
+        current.to = ++version;
+        supersededVersions++;
+        if (!hasOpenSnapshots()) {
+            versionChains.remove(eventId);
+        }
+        if (supersededVersions >= collectThreshold) {
+            collectVersions();
+        }
+    }
+
+    private void appendVersion(EventVersion v) {
+        if (versionCount == versionLog.length) {
+            // Copy rather than grow in place: open snapshots keep scanning the old array
+            versionLog = Arrays.copyOf(versionLog, versionCount * 2);
+        }
+        versionLog[versionCount++] = v;
+    }
+
+    private boolean hasOpenSnapshots() {
+        synchronized (openSnapshots) {
+            return !openSnapshots.isEmpty();
+        }
+    }
+
+    /**
+     * Drop every version that ended at or before the oldest open snapshot (all ended
+     * ones if none is open) from a new copy of the log, and unlink them from the chains.
+     * Caller holds indexLock for writing.
+     */
+    private void collectVersions() {
+        long oldest;
+        synchronized (openSnapshots) {
+            oldest = openSnapshots.isEmpty() ? version + 1 : openSnapshots.firstKey();
+        }
+        EventVersion[] kept = new EventVersion[Math.max(16, versionCount)];
+        int n = 0;
+        int superseded = 0;
+        for (int i = 0; i < versionCount; i++) {
+            EventVersion v = versionLog[i];
+            if (v.to <= oldest) {
+                String eventId = v.event.getEventId();
+                if (versionChains.get(eventId) == v) {
+                    versionChains.remove(eventId);
+                }
+                continue;
+            }
+            EventVersion previous = v.previous;
+            if (previous != null && previous.to <= oldest) {
+                v.previous = null;
+            }
+            if (!v.isCurrent()) {
+                superseded++;
+            }
+            kept[n++] = v;
+        }
+        int dropped = versionCount - n;
+        versionLog = kept;
+        versionCount = n;
+        supersededVersions = superseded;
+        collectThreshold = superseded + Math.max(MIN_COLLECT, n / 8);
+        collections++;
+        LOG.info("MultiVersion: collected {} versions, {} still kept for snapshots", dropped, superseded);
+    }
+
+    // ===========================================
+    // ============ BULK LOADING =================
+    // ===========================================
+
+    /**
+     * Replace all users, friendships and events at once (e.g. from a snapshot) and rebuild
+     * every index, using all cores. Nothing is passed to the mutation log.
+     *  - Phase 1, in parallel: user indexes; friendships; eventMap and title index.
+     *  - Phase 2: group events by owner and by invitee.
+     *  - Phase 3, in parallel per user: owned and invited calendars, busy bitmaps.
+     * @param users all users
+     * @param friendships userId pairs: friendships[2i] is friends with friendships[2i + 1]
+     * @param owners owners[i] is the userId that created events[i]
+     * @param events all events
+     */
+    public void loadBulk(User[] users, String[] friendships, String[] owners, Event[] events) {
+        if (owners.length != events.length || friendships.length % 2 != 0) {
+            throw new IllegalArgumentException("Mismatched owners/events or odd friendship array");
+        }
+        long[] stamps = lockAll();
+        try {
+            userMap = new IdKeyedMap<>();
+            usernameIndex = new HashMap<>(users.length * 2);
+            usernamePrefixIndex = new RadixTree<>();
+            adjacencyList = new IdKeyedMap<>();
+            resetEventStripes();
+            titleIndex = new TrigramIndex<>();
+            stringPool = new StringPool();
+            resetShards();
+            friendView = null;
+
+            // Phase 1
+            CompletableFuture<Void> userTask = CompletableFuture.runAsync(() -> {
+                for (User user : users) {
+                    userMap.put(user.getUserId(), user);
+                    usernameIndex.put(user.getUsername(), user);
+                    usernamePrefixIndex.put(user.getUsername().toLowerCase(), user);
+                }
+                resetUsernameFilter();
+            });
+            CompletableFuture<Void> friendTask = CompletableFuture.runAsync(() -> {
+                for (User user : users) {
+                    adjacencyList.putIfAbsent(user.getUserId(), new HashSet<>());
+                }
+                for (int i = 0; i < friendships.length; i += 2) {
+                    adjacencyList.putIfAbsent(friendships[i], new HashSet<>());
+                    adjacencyList.putIfAbsent(friendships[i + 1], new HashSet<>());
+                    adjacencyList.get(friendships[i]).add(friendships[i + 1]);
+                    adjacencyList.get(friendships[i + 1]).add(friendships[i]);
+                }
+            });
+            CompletableFuture<Void> eventTask = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < events.length; i++) {
+                    EventStripe stripe = stripeOf(events[i].getEventId());
+                    stripe.events.put(events[i].getEventId(), events[i]);
+                    stripe.owners.put(events[i].getEventId(), owners[i]);
+                    titleIndex.add(events[i], events[i].getTitle());
+                }
+            });
+            userTask.join();
+
+            // Phase 2 (needs usernameIndex): slot per user, owned and invited event lists per
+            // slot. Invitee lists go to the stripes, whose other maps eventTask is filling.
+            MyMap<String, Integer> slotOf = new IdKeyedMap<>();
+            List<String> slotUser = new ArrayList<>();
+            List<List<Event>> owned = new ArrayList<>();
+            List<List<Event>> invited = new ArrayList<>();
+            for (int i = 0; i < events.length; i++) {
+                Event event = events[i];
+                owned.get(slot(owners[i], slotOf, slotUser, owned, invited)).add(event);
+                List<String> participants = event.getParticipants();
+                if (participants == null || participants.isEmpty()) continue;
+                List<String> eventInviteeIds = null;
+                for (String name : participants) {
+                    User invitee = usernameIndex.get(name.trim());
+                    if (invitee == null) continue;
+                    String inviteeId = invitee.getUserId();
+                    if (inviteeId.equals(owners[i])) continue;
+                    if (eventInviteeIds == null) {
+                        eventInviteeIds = new ArrayList<>();
+                    } else if (eventInviteeIds.contains(inviteeId)) {
+                        continue;
+                    }
+                    eventInviteeIds.add(inviteeId);
+                    invited.get(slot(inviteeId, slotOf, slotUser, owned, invited)).add(event);
+                }
+                if (eventInviteeIds != null) {
+                    stripeOf(event.getEventId()).invitees.put(event.getEventId(), eventInviteeIds);
+                }
+            }
+
+            // Phase 3: every user's structures are independent, so build them in parallel
+            placeGrouped(slotUser, owned, invited);
+
+            friendTask.join();
+            eventTask.join();
+            if (multiVersion) {
+                // Open snapshots keep the log they have; the new one starts from the loaded events
+                resetVersions();
+            }
+        } finally {
+            unlockAll(stamps);
+        }
+        LOG.info("LoadBulk: {} users, {} friendships, {} events", users.length, friendships.length / 2, events.length);
+    }
+
+    private static int slot(String userId, MyMap<String, Integer> slotOf, List<String> slotUser,
+                            List<List<Event>> owned, List<List<Event>> invited) {
+        Integer slot = slotOf.get(userId);
+        if (slot == null) {
+            slot = slotUser.size();
+            slotOf.put(userId, slot);
+            slotUser.add(userId);
+            owned.add(new ArrayList<>());
+            invited.add(new ArrayList<>());
+        }
+        return slot;
+    }
+
+    private static UserCalendar buildCalendar(List<Event> events) {
+        if (events.isEmpty()) {
+            return null;
+        }
+        UserCalendar calendar = new UserCalendar();
+        for (Event e : events) {
+            calendar.add(e);
+        }
+        return calendar;
+    }
+
+    /**
+     * Add many events at once, e.g. from an import: applyBatch with one addEvent mutation
+     * per event, so other threads see all of them or none, events whose id already exists
+     * (or repeats within the batch) replace it in order, and every affected user's
+     * calendars and busy bitmaps are filled in parallel.
+     * @param ownerIds ownerIds.get(i) is the userId creating events.get(i)
+     * @param events events to add
+     * @throws IllegalArgumentException if any event is incomplete or ends before it starts;
+     *         nothing is added
+     */
+    public void addEventsBulk(List<String> ownerIds, List<Event> events) {
+        if (ownerIds.size() != events.size()) {
+            throw new IllegalArgumentException("Mismatched owners and events");
+        }
+        List<Mutation> batch = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            checkEvent(events.get(i));
+            batch.add(Mutation.addEvent(ownerIds.get(i), events.get(i)));
+        }
+        applyBatch(batch);
+    }
+
+    /**
+     * Apply many addEvent/removeEvent calls at once, e.g. an import, a recurring series or
+     * a team invitation. Same result as making the calls in order, but:
+     *  - every mutation is checked before anything changes, and the batch runs under every
+     *    lock, so other threads see all of it or none of it;
+     *  - eventMap, owners, title index and invitee lists are updated in one pass, with the
+     *    id maps sized once; an event replaced or removed later in the batch never reaches
+     *    a calendar;
+     *  - calendar changes are grouped per user and day, so each day queue grows and is
+     *    heapified once, and each busy-bitmap day emptied by a removal is rebuilt once;
+     *  - one log line for the batch instead of one per event, and one mutation log record
+     *    for the whole batch, written before any of it is applied.
+     * In lazy hydration mode the users making the mutations are hydrated first; invitees
+     * who are not hydrated read the events from the PartitionStore when they are.
+     * @return how many mutations changed the store; removing an event the user does not
+     *         own is skipped, where removeEvent would return false
+     * @throws IllegalArgumentException if a mutation is incomplete or adds an event that
+     *         ends before it starts; nothing is applied
+     */
+    public int applyBatch(List<Mutation> batch) {
+        for (Mutation m : batch) {
+            checkMutation(m);
+        }
+
+        int applied;
+        long[] stamps = lockAll();
+        try {
+            if (mutationLog != null && !batch.isEmpty()) {
+                mutationLog.eventBatch(batch);
+            }
+            applied = applyGrouped(batch);
+        } finally {
+            unlockAll(stamps);
+        }
+        awaitLogged();
+        LOG.info("ApplyBatch: {} of {} mutations applied", applied, batch.size());
+        return applied;
+    }
+
+    /**
+     * applyBatch once the store is locked. Caller holds every lock.
+     */
+    private int applyGrouped(List<Mutation> batch) {
+        int applied = 0;
+        if (partitionStore != null) {
+            List<String> userIds = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (Mutation m : batch) {
+                if (seen.add(m.getUserId())) {
+                    userIds.add(m.getUserId());
+                }
+            }
+            ensureHydrated(userIds);
+        }
+
+        // Pass 1: shared maps and indexes, in batch order. Events still current at the
+        // end go to the calendars afterwards; only events that were there before the
+        // batch have to come out.
+        int[] adds = new int[EVENT_STRIPES];
+        for (Mutation m : batch) {
+            if (m.getType() == Mutation.Type.ADD_EVENT) {
+                adds[stripeIndex(m.getEvent().getEventId())]++;
+            }
+        }
+        for (int i = 0; i < EVENT_STRIPES; i++) {
+            eventStripes[i].events.ensureCapacity(eventStripes[i].events.size() + adds[i]);
+            eventStripes[i].owners.ensureCapacity(eventStripes[i].owners.size() + adds[i]);
+        }
+        LinkedHashMap<String, Placement> added = new LinkedHashMap<>();
+        List<Placement> removed = new ArrayList<>();
+        for (Mutation m : batch) {
+            String userId = m.getUserId();
+            if (m.getType() == Mutation.Type.ADD_EVENT) {
+                Event event = m.getEvent();
+                String eventId = event.getEventId();
+                event.setTitle(stringPool.intern(event.getTitle()));
+                event.setParticipants(stringPool.internAll(event.getParticipants()));
+                EventStripe stripe = stripeOf(eventId);
+                Event replaced = stripe.events.put(eventId, event);
+                String previousOwner = stripe.owners.put(eventId, userId);
+                if (replaced != null) {
+                    titleIndex.remove(replaced);
+                    releaseStrings(replaced);
+                    String replacedOwner = previousOwner != null ? previousOwner : userId;
+                    List<String> previousInvitees = stripe.invitees.remove(eventId);
+                    if (added.remove(eventId) == null) {
+                        removed.add(new Placement(replaced, replacedOwner, previousInvitees));
+                    }
+                    if (partitionStore != null) {
+                        partitionStore.eventRemoved(replacedOwner,
+                                previousInvitees == null ? new ArrayList<>() : previousInvitees, eventId);
+                    }
+                }
+                titleIndex.add(event, event.getTitle());
+                List<String> invitees = resolveInvitees(userId, event);
+                if (!invitees.isEmpty()) {
+                    stripe.invitees.put(eventId, invitees);
+                }
+                if (partitionStore != null) {
+                    partitionStore.eventAdded(userId, invitees, event);
+                }
+                added.put(eventId, new Placement(event, userId, invitees));
+                if (multiVersion) {
+                    recordVersion(event, userId, invitees);
+                }
+            } else {
+                String eventId = m.getEventId();
+                EventStripe stripe = stripeOf(eventId);
+                Event event = stripe.events.get(eventId);
+                if (event == null || !userId.equals(stripe.owners.get(eventId))) continue;
+                stripe.events.remove(eventId);
+                stripe.owners.remove(eventId);
+                titleIndex.remove(event);
+                releaseStrings(event);
+                List<String> invitees = stripe.invitees.remove(eventId);
+                if (added.remove(eventId) == null) {
+                    removed.add(new Placement(event, userId, invitees));
+                }
+                if (partitionStore != null) {
+                    partitionStore.eventRemoved(userId, invitees == null ? new ArrayList<>() : invitees, eventId);
+                }
+                if (multiVersion) {
+                    recordRemoval(eventId);
+                }
+            }
+            applied++;
+        }
+
+        // Pass 2: take replaced and removed events out of their calendars, one pass per
+        // day queue, noting the days whose busy bitmaps they were on. In lazy hydration
+        // mode users who are not hydrated have neither.
+        MyMap<String, Integer> removedSlotOf = new IdKeyedMap<>();
+        List<String> removedUser = new ArrayList<>();
+        List<List<Event>> removedOwned = new ArrayList<>();
+        List<List<Event>> removedInvited = new ArrayList<>();
+        for (Placement p : removed) {
+            if (isResident(p.ownerId)) {
+                removedOwned.get(slot(p.ownerId, removedSlotOf, removedUser, removedOwned, removedInvited))
+                        .add(p.event);
+            }
+            if (p.invitees != null) {
+                for (String inviteeId : p.invitees) {
+                    if (!isResident(inviteeId)) continue;
+                    removedInvited.get(slot(inviteeId, removedSlotOf, removedUser, removedOwned, removedInvited))
+                            .add(p.event);
+                }
+            }
+        }
+        List<Set<LocalDate>> staleDays = new ArrayList<>(removedUser.size());
+        for (int slot = 0; slot < removedUser.size(); slot++) {
+            String userId = removedUser.get(slot);
+            Shard shard = shardOf(userId);
+            removeFrom(shard.owned, userId, removedOwned.get(slot));
+            removeFrom(shard.invited, userId, removedInvited.get(slot));
+            Set<LocalDate> days = new HashSet<>();
+            for (List<Event> events : List.of(removedOwned.get(slot), removedInvited.get(slot))) {
+                for (Event e : events) {
+                    LocalDate lastDay = lastDayOf(e);
+                    for (LocalDate day = e.getStartTime().toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+                        days.add(day);
+                    }
+                }
+            }
+            staleDays.add(days);
+        }
+
+        // Pass 3: group added events per user, then fill each user's calendars and
+        // bitmaps in parallel
+        MyMap<String, Integer> slotOf = new IdKeyedMap<>();
+        List<String> slotUser = new ArrayList<>();
+        List<List<Event>> owned = new ArrayList<>();
+        List<List<Event>> invited = new ArrayList<>();
+        for (Placement p : added.values()) {
+            owned.get(slot(p.ownerId, slotOf, slotUser, owned, invited)).add(p.event);
+            for (String inviteeId : p.invitees) {
+                if (!isResident(inviteeId)) continue;
+                invited.get(slot(inviteeId, slotOf, slotUser, owned, invited)).add(p.event);
+            }
+        }
+        placeGrouped(slotUser, owned, invited);
+
+        // Pass 4: rebuild stale days from the final calendars, once each
+        for (int slot = 0; slot < removedUser.size(); slot++) {
+            String userId = removedUser.get(slot);
+            for (LocalDate day : staleDays.get(slot)) {
+                LocalDateTime dayStart = day.atStartOfDay();
+                shardOf(userId).availability.rebuildDay(userId, day, conflictsOf(userId, dayStart, dayStart.plusDays(1)));
+            }
+        }
+        if (partitionStore != null) {
+            // The batch's users were kept resident while it ran
+            evictIdle(Collections.emptyList());
+        }
+        return applied;
+    }
+
+    /**
+     * Add each slot's owned and invited events to that user's calendars and busy bitmaps,
+     * one user per parallel task. Calendars and bitmap sets are looked up or created
+     * first, so the parallel part touches no shared map. Caller holds every lock.
+     * @param slotUser slotUser.get(slot) is the user whose events are owned.get(slot) and
+     *                 invited.get(slot)
+     */
+    private void placeGrouped(List<String> slotUser, List<List<Event>> owned, List<List<Event>> invited) {
+        int slots = slotUser.size();
+        UserCalendar[] ownedCalendars = new UserCalendar[slots];
+        UserCalendar[] invitedCals = new UserCalendar[slots];
+        List<SparseIntArray<long[]>> busyDays = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            String userId = slotUser.get(slot);
+            Shard shard = shardOf(userId);
+            ownedCalendars[slot] = owned.get(slot).isEmpty() ? null : calendarOf(shard.owned, userId);
+            invitedCals[slot] = invited.get(slot).isEmpty() ? null : calendarOf(shard.invited, userId);
+            busyDays.add(shard.availability.daysFor(userId));
+        }
+        IntStream.range(0, slots).parallel().forEach(slot -> {
+            SparseIntArray<long[]> days = busyDays.get(slot);
+            if (ownedCalendars[slot] != null) {
+                ownedCalendars[slot].addAll(owned.get(slot));
+            }
+            if (invitedCals[slot] != null) {
+                invitedCals[slot].addAll(invited.get(slot));
+            }
+            for (Event e : owned.get(slot)) {
+                AvailabilityIndex.markBusy(days, e.getStartTime(), e.getEndTime());
+            }
+            for (Event e : invited.get(slot)) {
+                AvailabilityIndex.markBusy(days, e.getStartTime(), e.getEndTime());
+            }
+        });
+        for (int slot = 0; slot < slots; slot++) {
+            if (busyDays.get(slot).isEmpty()) {
+                shardOf(slotUser.get(slot)).availability.putDays(slotUser.get(slot), busyDays.get(slot));
+            }
+        }
+    }
+
+    private static void removeFrom(MyMap<String, UserCalendar> calendars, String userId, List<Event> events) {
+        UserCalendar calendar = events.isEmpty() ? null : calendars.get(userId);
+        if (calendar != null) {
+            calendar.removeAll(events);
+            if (calendar.isEmpty()) {
+                calendars.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * An event with the owner and invitees it is (or is to be) indexed under.
+     */
+    private static final class Placement {
+        final Event event;
+        final String ownerId;
+        final List<String> invitees;
+
+        Placement(Event event, String ownerId, List<String> invitees) {
+            this.event = event;
+            this.ownerId = ownerId;
+            this.invitees = invitees;
+        }
+    }
+
+    private static void checkMutation(Mutation m) {
+        if (m == null || m.getType() == null || m.getUserId() == null) {
+            throw new IllegalArgumentException("Incomplete mutation: " + m);
+        }
+        if (m.getType() == Mutation.Type.REMOVE_EVENT) {
+            if (m.getEventId() == null) {
+                throw new IllegalArgumentException("Incomplete mutation: " + m);
+            }
+            return;
+        }
+        checkEvent(m.getEvent());
+    }
+
+    private static UserCalendar calendarOf(MyMap<String, UserCalendar> calendars, String userId) {
+        UserCalendar calendar = calendars.get(userId);
+        if (calendar == null) {
+            calendar = new UserCalendar();
+            calendars.put(userId, calendar);
+        }
+        return calendar;
+    }
+
+    // ===========================================
+    // ===== PRIORITY QUEUE STRUCTURE EXAMPLE ====
+    // ===========================================
+    // Already embedded above in addEvent/getUserEventsByDay
+
+    // ===========================================
+    // ========= STACK USAGE METHODS =============
+    // ===========================================
+
+    /**
+     * For page transitions or undo operations, we store them in a stack.
+     * You can store Pane objects, Operation objects, or any type you prefer.
+     */
+    public void pushToStack(Object item) {
+        synchronized (stack) {
+            stack.push(item);
+        }
+    }
+
+    public Object popFromStack() {
+        synchronized (stack) {
+            if (!stack.isEmpty()) {
+                return stack.pop();
+            }
+            return null;
+        }
+    }
+
+    public boolean isStackEmpty() {
+        synchronized (stack) {
+            return stack.isEmpty();
+        }
+    }
+
+    // Example usage: push an operation or page name into stack, pop to revert.
+    
+    // Remove events
+    public boolean removeEvent(String userId, String eventId) {
+        Boolean removed = null;
+        if (partitionStore != null) {
+            long[] stamps = lockAll();
+            try {
+                ensureHydrated(userId);
+                removed = removeEventLocked(userId, eventId, stamps);
+            } finally {
+                unlockAll(stamps);
+            }
+        }
+        StampedLock stripeLock = stripeOf(eventId).lock;
+        while (removed == null) {
+            long[] stamps = lockUsers(readLocked(stripeLock, () -> usersTouchedByRemove(userId, eventId)), true);
+            try {
+                removed = removeEventLocked(userId, eventId, stamps);
+            } finally {
+                unlockShards(stamps);
+            }
+        }
+        awaitLogged();
+        return removed;
+    }
+
+    /**
+     * The user and the event's invitees, whose calendars removing it changes.
+     */
+    private List<String> usersTouchedByRemove(String userId, String eventId) {
+        List<String> users = new ArrayList<>();
+        users.add(userId);
+        List<String> invitees = stripeOf(eventId).invitees.get(eventId);
+        if (invitees != null) {
+            users.addAll(invitees);
+        }
+        return users;
+    }
+
+    /**
+     * Caller holds the shards of the user and the event's invitees, and in lazy mode
+     * every lock; otherwise the event's stripe, textLock and (in multi-version mode, for
+     * the removal record) indexLock are taken here.
+     * @return null if the invitees changed before their shards were held (retry)
+     */
+    private Boolean removeEventLocked(String userId, String eventId, long[] stamps) {
+        boolean holdsAll = stamps.length > SHARDS;
+        EventStripe stripe = stripeOf(eventId);
+        long stripeStamp = holdsAll ? 0 : stripe.lock.writeLock();
+        boolean lockIndex = !holdsAll && multiVersion;
+        long stamp = lockIndex ? indexLock.writeLock() : 0;
+        Event eventToRemove;
+        List<String> invitees;
+        try {
+            if (!holdsShards(stamps, usersTouchedByRemove(userId, eventId))) {
+                return null;
+            }
+
+            // Check if events exist
+            eventToRemove = stripe.events.get(eventId);
+            if (eventToRemove == null) {
+                LOG.debug("RemoveEvent: Event not found, eventId={}", eventId);
+                return false;
+            }
+
+            // Check if the user has any events
+            Shard shard = shardOf(userId);
+            UserCalendar calendar = shard.owned.get(userId);
+            if (calendar == null) {
+                LOG.debug("RemoveEvent: No events for userId={}", userId);
+                return false;
+            }
+
+            if (!userId.equals(stripe.owners.get(eventId))) {
+                LOG.debug("RemoveEvent: Event not found in user's events, eventId={}", eventId);
+                return false;
+            }
+
+            // Log the removal before anything changes
+            if (mutationLog != null) {
+                mutationLog.eventRemoved(userId, eventId);
+            }
+
+            // Remove from the owner's day queue, interval tree and timeline
+            calendar.remove(eventToRemove);
+
+            // If the user has no more events, remove their entry from the shard
+            if (calendar.isEmpty()) {
+                shard.owned.remove(userId);
+            }
+
+            // Remove from eventMap and secondary indexes
+            stripe.events.remove(eventId);
+            stripe.owners.remove(eventId);
+            long textStamp = holdsAll ? 0 : textLock.writeLock();
+            try {
+                titleIndex.remove(eventToRemove);
+                releaseStrings(eventToRemove);
+            } finally {
+                if (!holdsAll) {
+                    textLock.unlockWrite(textStamp);
+                }
+            }
+            invitees = stripe.invitees.remove(eventId);
+            if (partitionStore != null) {
+                partitionStore.eventRemoved(userId, invitees == null ? new ArrayList<>() : invitees, eventId);
+            }
+            if (multiVersion) {
+                recordRemoval(eventId);
+            }
+        } finally {
+            if (lockIndex) {
+                indexLock.unlockWrite(stamp);
+            }
+            if (!holdsAll) {
+                stripe.lock.unlockWrite(stripeStamp);
+            }
+        }
+
+        // Invitees' calendars and busy bitmaps only need their shards
+        List<String> affected = removeInvitations(eventToRemove, invitees);
+        affected.add(userId);
+        refreshAvailability(affected, eventToRemove);
+        LOG.debug("RemoveEvent: Successfully removed eventId={}, title={}", eventId, eventToRemove.getTitle());
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import adt.MyMap;
+
+/**
+ * Read-only view of a DataStore's events as of one version, from DataStore.openSnapshot.
+ *  - Sees every event that was current at that version, whatever later addEvent and
+ *    removeEvent calls do, and never blocks them: scans walk the version log as it was
+ *    when the snapshot opened, and id lookups only briefly read the store's version chains.
+ *  - Users and friendships are not versioned; look them up on the store.
+ *  - Close it when done, so the store can drop versions nothing else needs.
+ */
+public final class DataStoreSnapshot implements AutoCloseable {
+
+    private static final Comparator<Event> TIME_ORDER =
+            Comparator.comparing(Event::getStartTime).thenComparing(Event::getEventId);
+
+    private final DataStore store;
+    private final long version;
+    // The store's version log when this snapshot opened; entries past count came later
+    private final EventVersion[] log;
+    private final int count;
+    // eventId -> newest version, as kept by the store for the log above
+    private final MyMap<String, EventVersion> chains;
+    private volatile boolean closed;
+
+    DataStoreSnapshot(DataStore store, long version, EventVersion[] log, int count,
+                      MyMap<String, EventVersion> chains) {
+        this.store = store;
+        this.version = version;
+        this.log = log;
+        this.count = count;
+        this.chains = chains;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The event with this id as of the snapshot, or null if it did not exist then.
+     */
+    public Event getEventById(String eventId) {
+        EventVersion v = find(eventId);
+        return v == null ? null : v.event;
+    }
+
+    /**
+     * The userId that owned the event as of the snapshot, or null.
+     */
+    public String getEventOwner(String eventId) {
+        EventVersion v = find(eventId);
+        return v == null ? null : v.ownerId;
+    }
+
+    /**
+     * The userIds the event was indexed under as an invitee as of the snapshot (empty if none).
+     */
+    public List<String> getEventInvitees(String eventId) {
+        EventVersion v = find(eventId);
+        return v == null || v.invitees == null ? Collections.emptyList() : Collections.unmodifiableList(v.invitees);
+    }
+
+    /**
+     * Every event as of the snapshot, in the order they were added. O(versions retained).
+     */
+    public List<Event> getEvents() {
+        checkOpen();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (log[i].isVisibleAt(version)) {
+                events.add(log[i].event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * The user's own and invited events starting in [from, to) as of the snapshot, in
+     * start-time order. Scans every version, so meant for reports rather than views.
+     */
+    public List<Event> getUserEventsInRange(String userId, LocalDateTime from, LocalDateTime to) {
+        checkOpen();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            EventVersion v = log[i];
+            if (!v.isVisibleAt(version)) continue;
+            LocalDateTime start = v.event.getStartTime();
+            if (start.isBefore(from) || !start.isBefore(to)) continue;
+            if (userId.equals(v.ownerId) || (v.invitees != null && v.invitees.contains(userId))) {
+                events.add(v.event);
+            }
+        }
+        events.sort(TIME_ORDER);
+        return events;
+    }
+
+    /**
+     * Release the snapshot; further calls fail. Closing twice is harmless.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            store.closeSnapshot(this);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private EventVersion find(String eventId) {
+        checkOpen();
+        for (EventVersion v = store.versionChain(chains, eventId); v != null; v = v.previous) {
+            if (v.isVisibleAt(version)) {
+                return v;
+            }
+            if (v.from <= version) {
+                // Older versions ended before this one started
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot at version " + version + " is closed");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One page of a time-ordered event range query.
+ * Pass getNextCursor() back to DataStore.getUserEventsInRange to fetch the following page;
+ * it is null when there are no more events in the range.
+ */
+public class EventPage {
+    private final List<Event> events;
+    private final Cursor nextCursor;
+
+    public EventPage(List<Event> events, Cursor nextCursor) {
+        this.events = events;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Position after the last event of a page: its start time and eventId.
+     * Stays valid if events are added or removed between page requests.
+     */
+    public static class Cursor {
+        private final LocalDateTime startTime;
+        private final String eventId;
+
+        public Cursor(LocalDateTime startTime, String eventId) {
+            this.startTime = startTime;
+            this.eventId = eventId;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public String getEventId() {
+            return eventId;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package model;
+
+import java.util.List;
+
+/**
+ * One version of an event in multi-version mode: the event as added, who owned it and
+ * who it was indexed under as an invitee, and the versions [from, to) it was current for.
+ * A snapshot at version s sees it when from <= s < to.
+ *  - Everything but to and previous is fixed once created.
+ *  - to is set once, when a later addEvent replaces the event or removeEvent removes it.
+ *  - previous links to the version this one replaced, while an open snapshot may need it.
+ */
+final class EventVersion {
+    static final long CURRENT = Long.MAX_VALUE;
+
+    final Event event;
+    final String ownerId;
+    final List<String> invitees;
+    final long from;
+    volatile long to = CURRENT;
+    volatile EventVersion previous;
+
+    EventVersion(Event event, String ownerId, List<String> invitees, long from, EventVersion previous) {
+        this.event = event;
+        this.ownerId = ownerId;
+        this.invitees = invitees;
+        this.from = from;
+        this.previous = previous;
+    }
+
+    boolean isVisibleAt(long version) {
+        return from <= version && version < to;
+    }
+
+    boolean isCurrent() {
+        return to == CURRENT;
+    }
+}
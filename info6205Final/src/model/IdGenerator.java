@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * Source of 64-bit ids for users and events.
+ * Ids are non-negative longs; format() gives their string form (lower-case base 36)
+ * for the String-typed ids of User and Event, and parse() turns such a string back
+ * into the long so maps can key on it.
+ */
+public interface IdGenerator {
+
+    // Longest base-36 form of a non-negative long ("1y2p0ij32e8e7")
+    int MAX_FORMATTED_LENGTH = 13;
+
+    /**
+     * Get a new id, never returned before by this generator
+     * @return a non-negative id
+     */
+    long nextId();
+
+    /**
+     * Get a new id in string form
+     * @return format(nextId())
+     */
+    default String nextIdString() {
+        return format(nextId());
+    }
+
+    /**
+     * String form of an id
+     * @param id a non-negative id
+     * @return the id in lower-case base 36
+     */
+    static String format(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id cannot be negative: " + id);
+        }
+        return Long.toString(id, Character.MAX_RADIX);
+    }
+
+    /**
+     * Parse the string form of an id.
+     * Only strings that format() could have produced are accepted (no sign, no leading
+     * zeros, no upper case), so format(parse(s)).equals(s) whenever parse(s) >= 0.
+     * @param s the string
+     * @return the id, or -1 if s is not the canonical form of an id
+     */
+    static long parse(String s) {
+        int length = s == null ? 0 : s.length();
+        if (length == 0 || length > MAX_FORMATTED_LENGTH || (length > 1 && s.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 10;
+            } else {
+                return -1;
+            }
+            if (value > (Long.MAX_VALUE - digit) / Character.MAX_RADIX) {
+                return -1;
+            }
+            value = value * Character.MAX_RADIX + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.List;
+
+import adt.MyMap;
+import adt.impl.HashMap;
+import adt.impl.LongHashMap;
+
+/**
+ * IdKeyedMap:
+ *  - MyMap keyed by user/event id strings that stores ids in their long form.
+ *  - Keys in the canonical form produced by IdGenerator.format go into a LongHashMap
+ *    (no boxed key, no entry object, no string hashing or equals on lookup); any other
+ *    key, such as a UUID from older data, falls back to a regular HashMap.
+ *  - The string form of a long key is only rebuilt for keySet().
+ */
+class IdKeyedMap<V> implements MyMap<String, V> {
+
+    private final LongHashMap<V> numeric = new LongHashMap<>();
+    private final MyMap<String, V> other = new HashMap<>();
+
+    @Override
+    public V put(String key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        long id = IdGenerator.parse(key);
+        return id >= 0 ? numeric.put(id, value) : other.put(key, value);
+    }
+
+    /**
+     * Make room for expectedSize canonical ids, so a batch of puts rehashes at most once.
+     */
+    void ensureCapacity(int expectedSize) {
+        numeric.ensureCapacity(expectedSize);
+    }
+
+    @Override
+    public V get(String key) {
+        long id = IdGenerator.parse(key);
+        if (id >= 0) {
+            return numeric.get(id);
+        }
+        return key == null ? null : other.get(key);
+    }
+
+    /**
+     * Look up by the long form of an id
+     */
+    V get(long id) {
+        return numeric.get(id);
+    }
+
+    @Override
+    public V remove(String key) {
+        long id = IdGenerator.parse(key);
+        if (id >= 0) {
+            return numeric.remove(id);
+        }
+        return key == null ? null : other.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return numeric.size() + other.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numeric.isEmpty() && other.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        numeric.clear();
+        other.clear();
+    }
+
+    @Override
+    public List<String> keySet() {
+        List<String> keys = other.keySet();
+        for (long id : numeric.keys()) {
+            keys.add(IdGenerator.format(id));
+        }
+        return keys;
+    }
+
+    @Override
+    public List<V> values() {
+        List<V> values = other.values();
+        values.addAll(numeric.values());
+        return values;
+    }
+
+    @Override
+    public V putIfAbsent(String key, V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return null;
+    }
+}
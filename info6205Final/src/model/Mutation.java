@@ -0,0 +1,55 @@
+package model;
+
+/**
+ * One change for DataStore.applyBatch:
+ *  - ADD_EVENT: what addEvent(userId, event) does, replacing an event with the same id
+ *  - REMOVE_EVENT: what removeEvent(userId, eventId) does; skipped if the user does not own it
+ */
+public final class Mutation {
+
+    public enum Type { ADD_EVENT, REMOVE_EVENT }
+
+    private final Type type;
+    private final String userId;
+    private final Event event;
+    private final String eventId;
+
+    private Mutation(Type type, String userId, Event event, String eventId) {
+        this.type = type;
+        this.userId = userId;
+        this.event = event;
+        this.eventId = eventId;
+    }
+
+    public static Mutation addEvent(String userId, Event event) {
+        return new Mutation(Type.ADD_EVENT, userId, event, event == null ? null : event.getEventId());
+    }
+
+    public static Mutation removeEvent(String userId, String eventId) {
+        return new Mutation(Type.REMOVE_EVENT, userId, null, eventId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * The event to add, or null for REMOVE_EVENT.
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + userId + ", " + eventId + ")";
+    }
+}
@@ -0,0 +1,37 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Receives every DataStore mutation before it is applied, e.g. to journal it for
+ * durability. The store validates a mutation first and calls the log only once nothing
+ * can stop it from being applied; if the call throws, the store is left unchanged.
+ * The calls are made under the store's locks, so they should only queue the record;
+ * the store calls awaitDurable once it has released them.
+ * Attached with DataStore.setMutationLog; no calls are made while none is attached
+ * (for instance while a journal is being replayed).
+ */
+public interface MutationLog {
+
+    void userAdded(User user);
+
+    void userRenamed(String userId, String newUsername);
+
+    void friendAdded(String userId1, String userId2);
+
+    void eventAdded(String userId, Event event);
+
+    void eventRemoved(String userId, String eventId);
+
+    /**
+     * A batch applied as a whole, by DataStore.applyBatch or addEventsBulk. Replaying it
+     * through applyBatch gives the same result, removals the user does not own included.
+     */
+    void eventBatch(List<Mutation> batch);
+
+    /**
+     * Block until every record the calling thread has queued is durable. If that fails,
+     * the mutations stay applied in memory and this throws.
+     */
+    void awaitDurable();
+}
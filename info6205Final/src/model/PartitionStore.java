@@ -0,0 +1,58 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent per-user event storage behind a DataStore in lazy hydration mode
+ * (DataStore.enableLazyHydration). A user's partition holds the events they created
+ * and the events they are invited to; DataStore loads it on first use and reports
+ * every later change, so the store stays the source of truth for evicted users.
+ */
+public interface PartitionStore {
+
+    /**
+     * Events stored for one user, with the userId that created each one.
+     */
+    final class Partition {
+        private final List<String> ownerIds = new ArrayList<>();
+        private final List<Event> events = new ArrayList<>();
+
+        public void add(String ownerId, Event event) {
+            ownerIds.add(ownerId);
+            events.add(event);
+        }
+
+        public int size() {
+            return events.size();
+        }
+
+        public String getOwnerId(int i) {
+            return ownerIds.get(i);
+        }
+
+        public Event getEvent(int i) {
+            return events.get(i);
+        }
+    }
+
+    /**
+     * Read a user's partition; empty if nothing was ever stored for them.
+     */
+    Partition load(String userId);
+
+    /**
+     * The userId that created an event, or null if no partition holds it.
+     */
+    String ownerOf(String eventId);
+
+    /**
+     * An event was added (or replaced) by ownerId and indexed for inviteeIds.
+     */
+    void eventAdded(String ownerId, List<String> inviteeIds, Event event);
+
+    /**
+     * An event was removed from ownerId's partition and from inviteeIds' partitions.
+     */
+    void eventRemoved(String ownerId, List<String> inviteeIds, String eventId);
+}
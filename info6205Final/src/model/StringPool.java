@@ -0,0 +1,137 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import adt.MyMap;
+import adt.impl.HashMap;
+
+/**
+ * StringPool:
+ *  - Canonical instances for strings that repeat across many events (titles such as
+ *    "Standup", participant usernames). Equal strings are replaced by one shared instance.
+ *  - Reference counted: every intern of a string counts one use, and release gives it
+ *    back, so a title that no event carries any more leaves the pool instead of staying
+ *    for the life of the store. Only the canonical instance itself can be released, so
+ *    releasing a string that never went through the pool changes nothing.
+ *  - Keeps counters of how many duplicate instances it replaced and roughly how many
+ *    heap bytes that released.
+ */
+public class StringPool {
+    // Object header + hash/coder fields of a String, and the header of its byte[]
+    private static final int STRING_OVERHEAD = 24;
+    private static final int ARRAY_OVERHEAD = 16;
+
+    // string -> its shared instance and how many interned uses are still held
+    private final MyMap<String, Entry> entries = new HashMap<>();
+    private long duplicatesReplaced;
+    private long bytesSaved;
+
+    private static final class Entry {
+        final String canonical;
+        int references;
+
+        Entry(String canonical) {
+            this.canonical = canonical;
+        }
+    }
+
+    /**
+     * Get the shared instance equal to s, counting one more use of it
+     * @param s The string, may be null
+     * @return the canonical instance, or null
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        Entry entry = entries.get(s);
+        if (entry == null) {
+            entry = new Entry(s);
+            entries.put(s, entry);
+        } else if (entry.canonical != s) {
+            duplicatesReplaced++;
+            bytesSaved += estimateBytes(s);
+        }
+        entry.references++;
+        return entry.canonical;
+    }
+
+    /**
+     * Replace every element of a list by its shared instance
+     * @param strings The strings, may be null
+     * @return the same list if it already held only shared instances, otherwise
+     *         a new ArrayList holding them
+     */
+    public List<String> internAll(List<String> strings) {
+        if (strings == null) {
+            return null;
+        }
+        List<String> canonical = new ArrayList<>(strings.size());
+        boolean changed = false;
+        for (String s : strings) {
+            String shared = intern(s);
+            changed |= shared != s;
+            canonical.add(shared);
+        }
+        return changed ? canonical : strings;
+    }
+
+    /**
+     * Give back one use of a string returned by intern; the string leaves the pool when
+     * its last use is released
+     * @param s The string, may be null
+     */
+    public void release(String s) {
+        if (s == null) {
+            return;
+        }
+        Entry entry = entries.get(s);
+        if (entry == null || entry.canonical != s) {
+            return;
+        }
+        if (--entry.references == 0) {
+            entries.remove(s);
+        }
+    }
+
+    /**
+     * Release every element of a list returned by internAll
+     * @param strings The strings, may be null
+     */
+    public void releaseAll(List<String> strings) {
+        if (strings == null) {
+            return;
+        }
+        for (String s : strings) {
+            release(s);
+        }
+    }
+
+    /**
+     * Get the number of distinct strings in the pool
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of duplicate instances replaced by a shared one
+     */
+    public long getDuplicatesReplaced() {
+        return duplicatesReplaced;
+    }
+
+    /**
+     * Get the approximate heap bytes released by replacing duplicates
+     * (assumes compact Latin-1 strings, 8-byte alignment)
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    private static long estimateBytes(String s) {
+        long array = (ARRAY_OVERHEAD + s.length() + 7) & ~7L;
+        return STRING_OVERHEAD + array;
+    }
+}
@@ -3,7 +3,7 @@ package model;
 public class User {
     private String userId;
     private String username;
-    private String password; // Simplify
+    private String password; // PasswordHasher hash; plain text only for users created before hashing
 
     public User(String userId, String username, String password) {
         this.userId = userId;
@@ -35,6 +35,13 @@ public class User {
 		this.password = password;
 	}
 
+	/**
+	 * Check a login attempt against the stored password hash
+	 */
+	public boolean checkPassword(String candidate) {
+		return PasswordHasher.matches(candidate, password);
+	}
+
     @Override
     public String toString() {
         // Show just username or userId or both
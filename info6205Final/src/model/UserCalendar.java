@@ -0,0 +1,203 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import adt.impl.IntervalTree;
+import adt.impl.PriorityQueue;
+import adt.impl.SkipList;
+import adt.impl.SparseIntArray;
+
+/**
+ * UserCalendar:
+ *  - All per-user event indexes for one set of events (owned or invited):
+ *      1) dailyEvents (epoch day -> PriorityQueue<Event>) for day views; a sparse
+ *         int-keyed array, so a day lookup is an array index rather than a LocalDate hash
+ *      2) intervals (IntervalTree<Event>) for conflict checks across day boundaries
+ *      3) timeline (SkipList<Event>) ordered by start time for range queries
+ *  - Times are indexed as UTC epoch seconds of the LocalDateTime.
+ */
+class UserCalendar {
+
+    // Tie-breaker for events sharing a start time
+    static final Comparator<Event> BY_EVENT_ID = Comparator.comparing(Event::getEventId);
+    private static final Comparator<Event> BY_START = Comparator.comparing(Event::getStartTime);
+
+    // Shared by every day queue instead of one comparator instance per queue
+    private static final EventPriorityComparator PRIORITY_ORDER = new EventPriorityComparator();
+    // Most days hold only a few events
+    private static final int DAY_QUEUE_CAPACITY = 2;
+
+    private final SparseIntArray<PriorityQueue<Event>> dailyEvents = new SparseIntArray<>();
+    private final IntervalTree<Event> intervals = new IntervalTree<>(BY_EVENT_ID);
+    private final SkipList<Event> timeline = new SkipList<>(BY_EVENT_ID);
+
+    /**
+     * Add an event to every index.
+     */
+    void add(Event event) {
+        int day = epochDay(event.getStartTime().toLocalDate());
+        PriorityQueue<Event> pq = dailyEvents.get(day);
+        if (pq == null) {
+            pq = new PriorityQueue<>(DAY_QUEUE_CAPACITY, PRIORITY_ORDER);
+            dailyEvents.put(day, pq);
+        }
+        pq.add(event);
+
+        long start = toEpochSecond(event.getStartTime());
+        intervals.insert(start, toEpochSecond(event.getEndTime()), event);
+        timeline.insert(start, event);
+    }
+
+    /**
+     * Add many events to every index. Events are grouped by day so each day queue is
+     * sized and heapified once for the whole group.
+     */
+    void addAll(List<Event> events) {
+        List<Event> byStart = new ArrayList<>(events);
+        byStart.sort(BY_START);
+        for (int from = 0; from < byStart.size(); ) {
+            int day = epochDay(byStart.get(from).getStartTime().toLocalDate());
+            int to = from + 1;
+            while (to < byStart.size() && epochDay(byStart.get(to).getStartTime().toLocalDate()) == day) {
+                to++;
+            }
+            PriorityQueue<Event> pq = dailyEvents.get(day);
+            if (pq == null) {
+                pq = new PriorityQueue<>(Math.max(DAY_QUEUE_CAPACITY, to - from), PRIORITY_ORDER);
+                dailyEvents.put(day, pq);
+            }
+            pq.addAll(byStart.subList(from, to));
+            from = to;
+        }
+
+        for (Event event : byStart) {
+            long start = toEpochSecond(event.getStartTime());
+            intervals.insert(start, toEpochSecond(event.getEndTime()), event);
+            timeline.insert(start, event);
+        }
+    }
+
+    /**
+     * Remove an event from every index.
+     * @return false if the event was not in this calendar
+     */
+    boolean remove(Event event) {
+        int day = epochDay(event.getStartTime().toLocalDate());
+        PriorityQueue<Event> pq = dailyEvents.get(day);
+        if (pq == null) {
+            return false;
+        }
+        String eventId = event.getEventId();
+        boolean removed = pq.removeIf(e -> e.getEventId().equals(eventId));
+        if (pq.isEmpty()) {
+            dailyEvents.remove(day);
+        }
+        if (removed) {
+            long start = toEpochSecond(event.getStartTime());
+            intervals.remove(start, event);
+            timeline.remove(start, event);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove many events from every index, with one pass over each day queue they were on.
+     * Events not in this calendar are ignored.
+     */
+    void removeAll(List<Event> events) {
+        List<Event> byStart = new ArrayList<>(events);
+        byStart.sort(BY_START);
+        for (int from = 0; from < byStart.size(); ) {
+            int day = epochDay(byStart.get(from).getStartTime().toLocalDate());
+            int to = from + 1;
+            while (to < byStart.size() && epochDay(byStart.get(to).getStartTime().toLocalDate()) == day) {
+                to++;
+            }
+            PriorityQueue<Event> pq = dailyEvents.get(day);
+            if (pq != null) {
+                Set<String> eventIds = new HashSet<>();
+                for (Event event : byStart.subList(from, to)) {
+                    eventIds.add(event.getEventId());
+                }
+                pq.removeIf(e -> eventIds.contains(e.getEventId()));
+                if (pq.isEmpty()) {
+                    dailyEvents.remove(day);
+                }
+            }
+            from = to;
+        }
+
+        for (Event event : byStart) {
+            long start = toEpochSecond(event.getStartTime());
+            intervals.remove(start, event);
+            timeline.remove(start, event);
+        }
+    }
+
+    boolean isEmpty() {
+        return dailyEvents.isEmpty();
+    }
+
+    int size() {
+        return timeline.size();
+    }
+
+    /**
+     * Every event in this calendar, ordered by start time.
+     */
+    List<Event> events() {
+        return timeline.range(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Events on one day, sorted by priority/time.
+     */
+    List<Event> getEventsByDay(LocalDate day) {
+        PriorityQueue<Event> pq = dailyEvents.get(epochDay(day));
+        if (pq == null) {
+            return Collections.emptyList();
+        }
+        return pq.toList();
+    }
+
+    boolean overlapsAny(LocalDateTime start, LocalDateTime end) {
+        return intervals.overlapsAny(toEpochSecond(start), toEpochSecond(end));
+    }
+
+    /**
+     * Events overlapping [start, end), ordered by start time.
+     */
+    List<Event> findOverlapping(LocalDateTime start, LocalDateTime end) {
+        return intervals.findOverlapping(toEpochSecond(start), toEpochSecond(end));
+    }
+
+    /**
+     * Up to limit events starting in [from, to), ordered by start time.
+     */
+    List<Event> range(LocalDateTime from, LocalDateTime to, int limit) {
+        return timeline.range(toEpochSecond(from), toEpochSecond(to), limit);
+    }
+
+    /**
+     * Up to limit events strictly after (after.startTime, after.eventId) and starting before to.
+     */
+    List<Event> rangeAfter(Event after, LocalDateTime to, int limit) {
+        return timeline.rangeAfter(toEpochSecond(after.getStartTime()), after, toEpochSecond(to), limit);
+    }
+
+    static int epochDay(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
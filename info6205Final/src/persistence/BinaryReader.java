@@ -0,0 +1,104 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Reads the encodings produced by BinaryWriter from a ByteBuffer (heap, direct or mapped),
+ * starting at its position. Malformed input raises CorruptRecordException.
+ */
+public class BinaryReader {
+    private final ByteBuffer buffer;
+
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int getByte() {
+        check(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public int getInt() {
+        check(4);
+        return buffer.getInt();
+    }
+
+    public long getLong() {
+        check(8);
+        return buffer.getLong();
+    }
+
+    public long getVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = getByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CorruptRecordException("Varint longer than 10 bytes");
+    }
+
+    public int getVarInt() {
+        long v = getVarLong();
+        if ((v >>> 32) != 0) {
+            throw new CorruptRecordException("Varint does not fit in an int: " + v);
+        }
+        return (int) v;
+    }
+
+    public long getZigZagLong() {
+        long v = getVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public String getString() {
+        int lengthPlusOne = getVarInt();
+        if (lengthPlusOne == 0) {
+            return null;
+        }
+        int length = lengthPlusOne - 1;
+        check(length);
+        String s;
+        if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] utf8 = new byte[length];
+            buffer.get(utf8);
+            s = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    public LocalDateTime getDateTime() {
+        if (getByte() == 0) {
+            return null;
+        }
+        long epochSecond = getZigZagLong();
+        int nano = getVarInt();
+        try {
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            throw new CorruptRecordException("Bad timestamp: " + epochSecond + "." + nano);
+        }
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    private void check(int n) {
+        if (n < 0 || buffer.remaining() < n) {
+            throw new CorruptRecordException("Unexpected end of record");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for writing the binary persistence formats.
+ * Fixed-width values are big-endian; varints are unsigned LEB128 (7 bits per byte,
+ * high bit set on all but the last byte), and zig-zag varints map small negative
+ * numbers to small unsigned ones.
+ */
+public class BinaryWriter {
+    private byte[] bytes;
+    private int size;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void putByte(int b) {
+        ensure(1);
+        bytes[size++] = (byte) b;
+    }
+
+    public void putInt(int v) {
+        ensure(4);
+        bytes[size++] = (byte) (v >>> 24);
+        bytes[size++] = (byte) (v >>> 16);
+        bytes[size++] = (byte) (v >>> 8);
+        bytes[size++] = (byte) v;
+    }
+
+    public void putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+    }
+
+    /**
+     * Unsigned varint: 1 byte below 128, at most 10 bytes
+     */
+    public void putVarLong(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes[size++] = (byte) v;
+    }
+
+    public void putVarInt(int v) {
+        putVarLong(v & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Signed varint: zig-zag encoded so that -1 takes one byte
+     */
+    public void putZigZagLong(long v) {
+        putVarLong((v << 1) ^ (v >> 63));
+    }
+
+    /**
+     * UTF-8 string prefixed with varint (length + 1); a single 0 byte means null
+     */
+    public void putString(String s) {
+        if (s == null) {
+            putVarInt(0);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        putVarInt(utf8.length + 1);
+        putBytes(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Exact LocalDateTime: UTC epoch second as a zig-zag varint, then nanos as a varint.
+     * Null is written as a single flag byte 0.
+     */
+    public void putDateTime(LocalDateTime time) {
+        if (time == null) {
+            putByte(0);
+            return;
+        }
+        putByte(1);
+        putZigZagLong(time.toEpochSecond(ZoneOffset.UTC));
+        putVarInt(time.getNano());
+    }
+
+    public void putBytes(byte[] src, int offset, int length) {
+        ensure(length);
+        System.arraycopy(src, offset, bytes, size, length);
+        size += length;
+    }
+
+    /**
+     * Overwrite 4 bytes at an earlier position (e.g. a length filled in afterwards)
+     */
+    public void setInt(int position, int v) {
+        bytes[position] = (byte) (v >>> 24);
+        bytes[position + 1] = (byte) (v >>> 16);
+        bytes[position + 2] = (byte) (v >>> 8);
+        bytes[position + 3] = (byte) v;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Backing array; only the first size() bytes are valid
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * Wrap the written bytes without copying
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import adt.impl.StringDictionary;
+import model.Event;
+import model.IdGenerator;
+import model.PriorityLevel;
+
+/**
+ * Compact binary encoding of a block of events, for backups, exports and replication.
+ *
+ * Events are written in start-time order (then id) so that consecutive start times
+ * are close together. Block layout, every number a varint:
+ *   version, event count, then per event:
+ *     flags  bits 0-1 priority (0 = null, else ordinal + 1)
+ *            bit 2 canonical numeric id   bit 3 start has nanos   bit 4 end has nanos
+ *            bit 5 participants null      bit 6 start null        bit 7 end null
+ *     id     IdGenerator.parse value if canonical, else a length-prefixed string
+ *     start  zig-zag delta in epoch seconds from the previous non-null start, [nanos]
+ *     end    zig-zag seconds after this event's start (after the previous start if this
+ *            start is null), [nanos]
+ *     title  string ref
+ *     participant count, then one string ref each
+ * A string ref is 0 for null, 1 for a new string that follows inline and joins the
+ * block's dictionary, or code + 2 for a string seen earlier in the block. Titles and
+ * participant names share the dictionary.
+ *
+ * Decoding returns the events in that time order; every field round-trips exactly,
+ * nulls included, and repeated strings decode to one shared instance.
+ */
+public final class CompactEventCodec {
+    static final int VERSION = 1;
+
+    private static final int PRIORITY_MASK = 0x03;
+    private static final int NUMERIC_ID = 0x04;
+    private static final int START_NANOS = 0x08;
+    private static final int END_NANOS = 0x10;
+    private static final int NULL_PARTICIPANTS = 0x20;
+    private static final int NULL_START = 0x40;
+    private static final int NULL_END = 0x80;
+
+    private static final int NULL_REF = 0;
+    private static final int NEW_REF = 1;
+    private static final int FIRST_CODE = 2;
+
+    private static final PriorityLevel[] PRIORITIES = PriorityLevel.values();
+
+    // Start (null first), then canonical ids by value before other ids, then other ids (null first)
+    private static final Comparator<SortKey> TIME_ORDER = (a, b) -> {
+        if (a.second != b.second) return Long.compare(a.second, b.second);
+        if (a.nano != b.nano) return Integer.compare(a.nano, b.nano);
+        if (a.numericId != b.numericId) {
+            if (a.numericId < 0 || b.numericId < 0) return a.numericId < 0 ? 1 : -1;
+            return Long.compare(a.numericId, b.numericId);
+        }
+        if (a.numericId >= 0) return 0;
+        String x = a.event.getEventId();
+        String y = b.event.getEventId();
+        if (x == null || y == null) return x == null ? (y == null ? 0 : -1) : 1;
+        return x.compareTo(y);
+    };
+
+    /**
+     * An event with its start time and id unpacked, so sorting compares longs instead
+     * of chasing LocalDateTime and String references.
+     */
+    private static final class SortKey {
+        final long second;
+        final int nano;
+        final long numericId; // IdGenerator.parse of the id, -1 if not canonical
+        final Event event;
+
+        SortKey(Event event) {
+            LocalDateTime start = event.getStartTime();
+            this.second = start == null ? Long.MIN_VALUE : start.toEpochSecond(ZoneOffset.UTC);
+            this.nano = start == null ? -1 : start.getNano();
+            this.numericId = IdGenerator.parse(event.getEventId());
+            this.event = event;
+        }
+    }
+
+    private CompactEventCodec() {
+    }
+
+    /**
+     * Encode events as one block
+     */
+    public static byte[] encode(Collection<Event> events) {
+        BinaryWriter out = new BinaryWriter(Math.max(64, events.size() * 24));
+        encode(events, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Append one block holding the events to out
+     */
+    public static void encode(Collection<Event> events, BinaryWriter out) {
+        SortKey[] sorted = new SortKey[events.size()];
+        int n = 0;
+        for (Event event : events) {
+            sorted[n++] = new SortKey(event);
+        }
+        Arrays.sort(sorted, TIME_ORDER);
+        StringDictionary dictionary = new StringDictionary();
+        out.putVarInt(VERSION);
+        out.putVarInt(sorted.length);
+        long previousStart = 0;
+        for (SortKey key : sorted) {
+            Event event = key.event;
+            LocalDateTime start = event.getStartTime();
+            LocalDateTime end = event.getEndTime();
+            long id = key.numericId;
+            int flags = event.getPriority() == null ? 0 : event.getPriority().ordinal() + 1;
+            if (id >= 0) flags |= NUMERIC_ID;
+            if (start == null) flags |= NULL_START;
+            else if (start.getNano() != 0) flags |= START_NANOS;
+            if (end == null) flags |= NULL_END;
+            else if (end.getNano() != 0) flags |= END_NANOS;
+            if (event.getParticipants() == null) flags |= NULL_PARTICIPANTS;
+            out.putByte(flags);
+
+            if (id >= 0) {
+                out.putVarLong(id);
+            } else {
+                out.putString(event.getEventId());
+            }
+            long startSecond = previousStart;
+            if (start != null) {
+                startSecond = key.second;
+                out.putZigZagLong(startSecond - previousStart);
+                if (start.getNano() != 0) {
+                    out.putVarInt(start.getNano());
+                }
+                previousStart = startSecond;
+            }
+            if (end != null) {
+                out.putZigZagLong(end.toEpochSecond(ZoneOffset.UTC) - startSecond);
+                if (end.getNano() != 0) {
+                    out.putVarInt(end.getNano());
+                }
+            }
+            putRef(out, dictionary, event.getTitle());
+            if (event.getParticipants() != null) {
+                out.putVarInt(event.getParticipants().size());
+                for (String name : event.getParticipants()) {
+                    putRef(out, dictionary, name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode a block made by encode
+     */
+    public static List<Event> decode(byte[] block) {
+        return decode(new BinaryReader(ByteBuffer.wrap(block)));
+    }
+
+    /**
+     * Decode the next block from in
+     */
+    public static List<Event> decode(BinaryReader in) {
+        int version = in.getVarInt();
+        if (version != VERSION) {
+            throw new CorruptRecordException("Unsupported event block version " + version);
+        }
+        int count = in.getVarInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new CorruptRecordException("Bad event count " + count);
+        }
+        List<Event> events = new ArrayList<>(count);
+        List<String> dictionary = new ArrayList<>();
+        long previousStart = 0;
+        for (int i = 0; i < count; i++) {
+            int flags = in.getByte();
+            String eventId = (flags & NUMERIC_ID) != 0 ? IdGenerator.format(in.getVarLong()) : in.getString();
+            LocalDateTime start = null;
+            long startSecond = previousStart;
+            if ((flags & NULL_START) == 0) {
+                startSecond = previousStart + in.getZigZagLong();
+                start = time(startSecond, (flags & START_NANOS) != 0 ? in.getVarInt() : 0);
+                previousStart = startSecond;
+            }
+            LocalDateTime end = null;
+            if ((flags & NULL_END) == 0) {
+                long endSecond = startSecond + in.getZigZagLong();
+                end = time(endSecond, (flags & END_NANOS) != 0 ? in.getVarInt() : 0);
+            }
+            String title = getRef(in, dictionary);
+            List<String> participants = null;
+            if ((flags & NULL_PARTICIPANTS) == 0) {
+                int n = in.getVarInt();
+                if (n < 0 || n > in.remaining()) {
+                    throw new CorruptRecordException("Bad participant count " + n);
+                }
+                participants = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    participants.add(getRef(in, dictionary));
+                }
+            }
+            int priority = flags & PRIORITY_MASK;
+            if (priority > PRIORITIES.length) {
+                throw new CorruptRecordException("Unknown priority code " + priority);
+            }
+            events.add(new Event(eventId, title, start, end, participants,
+                    priority == 0 ? null : PRIORITIES[priority - 1]));
+        }
+        return events;
+    }
+
+    private static void putRef(BinaryWriter out, StringDictionary dictionary, String s) {
+        if (s == null) {
+            out.putVarInt(NULL_REF);
+            return;
+        }
+        int code = dictionary.codeOf(s);
+        if (code >= 0) {
+            out.putVarInt(code + FIRST_CODE);
+        } else {
+            dictionary.encode(s);
+            out.putVarInt(NEW_REF);
+            out.putString(s);
+        }
+    }
+
+    private static String getRef(BinaryReader in, List<String> dictionary) {
+        int ref = in.getVarInt();
+        if (ref == NULL_REF) {
+            return null;
+        }
+        if (ref == NEW_REF) {
+            String s = in.getString();
+            if (s == null) {
+                throw new CorruptRecordException("Null dictionary string");
+            }
+            dictionary.add(s);
+            return s;
+        }
+        if (ref - FIRST_CODE >= dictionary.size()) {
+            throw new CorruptRecordException("Unknown string code " + (ref - FIRST_CODE));
+        }
+        return dictionary.get(ref - FIRST_CODE);
+    }
+
+    private static LocalDateTime time(long epochSecond, int nanos) {
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new CorruptRecordException("Bad nanos " + nanos);
+        }
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+}
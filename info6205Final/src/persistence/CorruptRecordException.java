@@ -0,0 +1,12 @@
+package persistence;
+
+/**
+ * Thrown when a persisted record or file cannot be decoded.
+ */
+public class CorruptRecordException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CorruptRecordException(String message) {
+        super(message);
+    }
+}
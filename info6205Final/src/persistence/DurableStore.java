@@ -0,0 +1,204 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import logging.Logger;
+import model.DataStore;
+
+/**
+ * DurableStore:
+ *  - Makes a DataStore survive restarts: on open, the newest readable snapshot is loaded
+ *    and the write-ahead log records after it are replayed into the store, then a
+ *    JournalMutationLog is attached so that each later addUser / renameUser /
+ *    addFriendRelation / addEvent / removeEvent / applyBatch is logged before it is
+ *    applied. A record the store rejects on replay (say, one written before the store
+ *    validated events) is skipped with a warning, so one bad record cannot stop the
+ *    store from opening.
+ *  - checkpoint() copies the store's references on the caller's thread and writes the
+ *    snapshot on a background thread, so callers are only held up for the copy.
+ *  - close() waits for a running checkpoint, fsyncs the log and detaches it.
+ */
+public class DurableStore implements Closeable {
+    private static final Logger LOG = Logger.get(DurableStore.class);
+
+    private final DataStore dataStore;
+    private final WriteAheadLog wal;
+    private final long snapshotLsn;
+    private final long replayedRecords;
+    private final long skippedRecords;
+    private final long replayMillis;
+
+    // Snapshots to keep; older ones are deleted after a successful checkpoint
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    // Serialises loading and deleting snapshots between checkpoints and a LogCompactor
+    private final Object snapshotLock = new Object();
+
+    private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private DurableStore(DataStore dataStore, WriteAheadLog wal, long snapshotLsn,
+                         long replayedRecords, long skippedRecords, long replayMillis) {
+        this.dataStore = dataStore;
+        this.wal = wal;
+        this.snapshotLsn = snapshotLsn;
+        this.replayedRecords = replayedRecords;
+        this.skippedRecords = skippedRecords;
+        this.replayMillis = replayMillis;
+    }
+
+    /**
+     * Replay the log in directory into dataStore and start journaling its mutations
+     * @param dataStore store to recover into; its current contents are not logged
+     * @param directory log directory, created if missing
+     * @param policy when appended records are fsynced
+     * @param intervalMillis fsync interval for FsyncPolicy.INTERVAL
+     */
+    public static DurableStore open(DataStore dataStore, Path directory, FsyncPolicy policy,
+                                    long intervalMillis) throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(directory, policy, intervalMillis);
+        long start = System.nanoTime();
+        long snapshotLsn = 0;
+        long replayed;
+        long[] skipped = {0};
+        dataStore.setMutationLog(null);
+        try {
+            Path snapshot = loadNewestSnapshot(dataStore, directory);
+            snapshotLsn = snapshot == null ? 0 : Snapshot.lsnOf(snapshot);
+            replayed = wal.replay(snapshotLsn, (lsn, type, payload) -> {
+                try {
+                    MutationCodec.apply(dataStore, type, payload);
+                } catch (RuntimeException e) {
+                    skipped[0]++;
+                    LOG.warn("DurableStore: skipping record {} of type {}: {}", lsn, type, e.toString());
+                }
+            });
+            // A compacted log may end before the snapshot; keep new lsns after it
+            wal.advanceTo(snapshotLsn);
+        } catch (IOException | RuntimeException e) {
+            wal.close();
+            throw e;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        dataStore.setMutationLog(new JournalMutationLog(wal));
+        LOG.info("DurableStore: loaded snapshot at lsn {} and replayed {} records ({} skipped) from {} in {} ms",
+                snapshotLsn, replayed, skipped[0], directory, millis);
+        return new DurableStore(dataStore, wal, snapshotLsn, replayed, skipped[0], millis);
+    }
+
+    /**
+     * Load the newest snapshot that passes its checks, falling back to older ones
+     * @return the snapshot loaded, or null if there is none
+     */
+    static Path loadNewestSnapshot(DataStore dataStore, Path directory) throws IOException {
+        for (Path file : Snapshot.list(directory)) {
+            try {
+                Snapshot.load(file, dataStore);
+                return file;
+            } catch (CorruptRecordException e) {
+                LOG.warn("DurableStore: skipping unreadable snapshot: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Load the newest readable snapshot into store; no snapshot is deleted meanwhile
+     * @return the snapshot loaded, or null if there is none
+     */
+    Path loadSnapshot(DataStore store) throws IOException {
+        synchronized (snapshotLock) {
+            return loadNewestSnapshot(store, wal.getDirectory());
+        }
+    }
+
+    /**
+     * Write a snapshot of the current state in the background. May be called from any
+     * thread: the copy is taken under the store's read lock, so it sees a consistent state.
+     * @return completes with the snapshot file once it is durable
+     */
+    public CompletableFuture<Path> checkpoint() {
+        wal.sync();
+        // Writers log under the same lock, so the lsn matches the copy exactly
+        Snapshot.Image image = dataStore.readShared(() -> Snapshot.capture(dataStore, wal.getLastLsn()));
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long start = System.nanoTime();
+                Path file = Snapshot.write(image, wal.getDirectory());
+                LOG.info("DurableStore: checkpoint of {} events at lsn {} written in {} ms",
+                        image.getEventCount(), image.getLsn(), (System.nanoTime() - start) / 1_000_000);
+                retainSnapshots();
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, checkpointer);
+    }
+
+    /**
+     * Delete all but the newest SNAPSHOTS_KEPT snapshots. Checkpoints and the LogCompactor
+     * both go through here, so neither deletes a snapshot the other is loading.
+     * @return lsn of the oldest snapshot kept, or 0 if there is none
+     */
+    long retainSnapshots() throws IOException {
+        synchronized (snapshotLock) {
+            List<Path> snapshots = Snapshot.list(wal.getDirectory());
+            for (int i = SNAPSHOTS_KEPT; i < snapshots.size(); i++) {
+                Files.deleteIfExists(snapshots.get(i));
+            }
+            return snapshots.isEmpty() ? 0
+                    : Snapshot.lsnOf(snapshots.get(Math.min(SNAPSHOTS_KEPT, snapshots.size()) - 1));
+        }
+    }
+
+    public DataStore getDataStore() {
+        return dataStore;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    public long getSnapshotLsn() {
+        return snapshotLsn;
+    }
+
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * Replayed records the store rejected; each was logged as a warning
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    public long getReplayMillis() {
+        return replayMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataStore.setMutationLog(null);
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+}
@@ -0,0 +1,13 @@
+package persistence;
+
+/**
+ * When the write-ahead log forces appended records to stable storage.
+ */
+public enum FsyncPolicy {
+    /** Every append returns only after its record is fsynced (group commit shares the fsync) */
+    EVERY_OP,
+    /** Appends are written immediately and fsynced by a background thread every interval */
+    INTERVAL,
+    /** Appends are written immediately; the operating system decides when to flush */
+    OS
+}
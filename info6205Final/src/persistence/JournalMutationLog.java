@@ -0,0 +1,116 @@
+package persistence;
+
+import java.util.List;
+
+import model.Event;
+import model.Mutation;
+import model.MutationLog;
+import model.User;
+
+/**
+ * MutationLog that appends every DataStore mutation to a write-ahead log.
+ * Each call only queues the record (WriteAheadLog.enqueue); awaitDurable returns once
+ * the calling thread's records are as durable as the log's fsync policy promises.
+ * A batch is one record, so replay applies all of it or none of it, unless it is
+ * larger than BATCH_RECORD_BYTES: it is then split over several records, and a crash
+ * while they are being written can leave only the first ones in the log.
+ */
+public class JournalMutationLog implements MutationLog {
+    static final int BATCH_RECORD_BYTES = 4 << 20;
+
+    private final WriteAheadLog wal;
+    private final ThreadLocal<PerThread> perThread = ThreadLocal.withInitial(PerThread::new);
+
+    /**
+     * Encoding buffer and the last lsn queued by one thread
+     */
+    private static final class PerThread {
+        final BinaryWriter out = new BinaryWriter();
+        long lastLsn;
+    }
+
+    public JournalMutationLog(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    @Override
+    public void userAdded(User user) {
+        BinaryWriter out = buffer();
+        MutationCodec.writeUser(out, user);
+        enqueue(MutationCodec.ADD_USER, out);
+    }
+
+    @Override
+    public void userRenamed(String userId, String newUsername) {
+        BinaryWriter out = buffer();
+        out.putString(userId);
+        out.putString(newUsername);
+        enqueue(MutationCodec.RENAME_USER, out);
+    }
+
+    @Override
+    public void friendAdded(String userId1, String userId2) {
+        BinaryWriter out = buffer();
+        out.putString(userId1);
+        out.putString(userId2);
+        enqueue(MutationCodec.ADD_FRIEND, out);
+    }
+
+    @Override
+    public void eventAdded(String userId, Event event) {
+        BinaryWriter out = buffer();
+        out.putString(userId);
+        MutationCodec.writeEvent(out, event);
+        enqueue(MutationCodec.ADD_EVENT, out);
+    }
+
+    @Override
+    public void eventRemoved(String userId, String eventId) {
+        BinaryWriter out = buffer();
+        out.putString(userId);
+        out.putString(eventId);
+        enqueue(MutationCodec.REMOVE_EVENT, out);
+    }
+
+    @Override
+    public void eventBatch(List<Mutation> batch) {
+        BinaryWriter out = buffer();
+        out.putInt(0);
+        int count = 0;
+        for (Mutation m : batch) {
+            if (out.size() >= BATCH_RECORD_BYTES) {
+                out.setInt(0, count);
+                enqueue(MutationCodec.BATCH, out);
+                out.reset();
+                out.putInt(0);
+                count = 0;
+            }
+            MutationCodec.writeMutation(out, m);
+            count++;
+        }
+        out.setInt(0, count);
+        enqueue(MutationCodec.BATCH, out);
+    }
+
+    @Override
+    public void awaitDurable() {
+        long lsn = perThread.get().lastLsn;
+        if (lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    private BinaryWriter buffer() {
+        BinaryWriter out = perThread.get().out;
+        out.reset();
+        return out;
+    }
+
+    private void enqueue(int type, BinaryWriter out) {
+        perThread.get().lastLsn = wal.enqueue(type, out);
+    }
+}
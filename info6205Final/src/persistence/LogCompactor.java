@@ -0,0 +1,201 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import logging.Logger;
+import model.DataStore;
+
+/**
+ * LogCompactor:
+ *  - Keeps a DurableStore's log bounded. When the write-ahead log grows past
+ *    maxLogToLiveRatio times the size of the last checkpoint (and past minLogBytes),
+ *    it rolls the log, folds the newest snapshot plus the closed segments into a private
+ *    DataStore, writes that as a new snapshot, and deletes the segments every kept
+ *    snapshot already covers. Removed and superseded events disappear in the fold.
+ *  - Never reads the live DataStore and never holds the log lock while working, so
+ *    writers are only held up for the roll (one fsync and a file open).
+ *  - Metrics: log-to-live ratio, estimated recovery time (from load and replay rates
+ *    measured while compacting), and totals for compactions and reclaimed bytes.
+ */
+public class LogCompactor implements Closeable {
+    private static final Logger LOG = Logger.get(LogCompactor.class);
+
+    private final DurableStore store;
+    private final WriteAheadLog wal;
+    private final double maxLogToLiveRatio;
+    private final long minLogBytes;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "log-compactor");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // Written by the compactor thread, read by anyone
+    private volatile long checkpointLsn;
+    private volatile long liveBytes;
+    private volatile long compactions;
+    private volatile long bytesReclaimed;
+    private volatile long lastCompactionMillis;
+    private volatile double loadNanosPerByte;
+    private volatile double replayNanosPerRecord;
+
+    /**
+     * Start compacting store's log in the background
+     * @param intervalMillis how often to check whether the log needs compacting
+     * @param maxLogToLiveRatio compact once log bytes exceed this multiple of the last snapshot
+     * @param minLogBytes never compact a log smaller than this
+     */
+    public LogCompactor(DurableStore store, long intervalMillis, double maxLogToLiveRatio, long minLogBytes)
+            throws IOException {
+        if (intervalMillis <= 0 || maxLogToLiveRatio <= 0 || minLogBytes < 0) {
+            throw new IllegalArgumentException("Interval and ratio must be positive, minimum size not negative");
+        }
+        this.store = store;
+        this.wal = store.getWriteAheadLog();
+        this.maxLogToLiveRatio = maxLogToLiveRatio;
+        this.minLogBytes = minLogBytes;
+        List<Path> snapshots = Snapshot.list(wal.getDirectory());
+        if (!snapshots.isEmpty()) {
+            checkpointLsn = Snapshot.lsnOf(snapshots.get(0));
+            liveBytes = Files.size(snapshots.get(0));
+        }
+        executor.scheduleWithFixedDelay(this::compactIfNeeded, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compact now, whatever the ratio
+     * @return completes with the new snapshot, or null if nothing was logged since the last one
+     */
+    public CompletableFuture<Path> compactNow() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private void compactIfNeeded() {
+        try {
+            long logBytes = wal.sizeOnDisk();
+            if (logBytes >= minLogBytes && logBytes > maxLogToLiveRatio * Math.max(1, liveBytes)) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("LogCompactor: compaction failed: {}", e.getMessage());
+        }
+    }
+
+    private Path compact() throws IOException {
+        long start = System.nanoTime();
+        Path directory = wal.getDirectory();
+        long upto = wal.roll();
+        List<Path> snapshots = Snapshot.list(directory);
+        if (!snapshots.isEmpty() && upto <= Snapshot.lsnOf(snapshots.get(0))) {
+            return null;
+        }
+
+        // Fold the newest readable snapshot and the closed segments after it into a
+        // private store, skipping records the store rejects as DurableStore.open does
+        DataStore folded = new DataStore();
+        long loadStart = System.nanoTime();
+        Path base = store.loadSnapshot(folded);
+        long baseLsn = 0;
+        if (base != null) {
+            baseLsn = Snapshot.lsnOf(base);
+            long baseBytes = base.toFile().length(); // 0 if a checkpoint has deleted it since
+            if (baseBytes > 0) {
+                loadNanosPerByte = (double) (System.nanoTime() - loadStart) / baseBytes;
+            }
+        }
+        long replayStart = System.nanoTime();
+        long[] skipped = {0};
+        long replayed = wal.replay(baseLsn, upto, (lsn, type, payload) -> {
+            try {
+                MutationCodec.apply(folded, type, payload);
+            } catch (RuntimeException e) {
+                skipped[0]++;
+                LOG.warn("LogCompactor: skipping record {} of type {}: {}", lsn, type, e.toString());
+            }
+        });
+        if (replayed > 0) {
+            replayNanosPerRecord = (double) (System.nanoTime() - replayStart) / replayed;
+        }
+
+        Path file = Snapshot.write(Snapshot.capture(folded, upto), directory);
+        long oldestKept = store.retainSnapshots();
+        long reclaimed = wal.deleteSegmentsBefore(oldestKept);
+
+        checkpointLsn = upto;
+        liveBytes = Files.size(file);
+        bytesReclaimed += reclaimed;
+        compactions++;
+        lastCompactionMillis = (System.nanoTime() - start) / 1_000_000;
+        LOG.info("LogCompactor: folded {} records ({} skipped) into snapshot at lsn {} ({} KB), "
+                + "deleted {} KB of log in {} ms", replayed, skipped[0], upto, liveBytes >> 10, reclaimed >> 10, lastCompactionMillis);
+        return file;
+    }
+
+    /**
+     * Bytes of write-ahead log on disk per byte of live data (the last snapshot).
+     */
+    public double getLogToLiveRatio() throws IOException {
+        return (double) wal.sizeOnDisk() / Math.max(1, liveBytes);
+    }
+
+    /**
+     * Estimated time to reopen the store now: load the last snapshot and replay the
+     * records after it, at the rates measured by the last compaction. 0 until one has run.
+     */
+    public long getEstimatedRecoveryMillis() {
+        double nanos = loadNanosPerByte * liveBytes
+                + replayNanosPerRecord * Math.max(0, wal.getLastLsn() - checkpointLsn);
+        return (long) (nanos / 1_000_000);
+    }
+
+    public long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public long getCompactionCount() {
+        return compactions;
+    }
+
+    public long getBytesReclaimed() {
+        return bytesReclaimed;
+    }
+
+    public long getLastCompactionMillis() {
+        return lastCompactionMillis;
+    }
+
+    /**
+     * Stop compacting, waiting for a running compaction to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.DataStore;
+import model.Event;
+import model.Mutation;
+import model.PriorityLevel;
+import model.User;
+
+/**
+ * Binary encoding of DataStore mutations as write-ahead log records, and their replay.
+ * Strings use BinaryWriter.putString and times BinaryWriter.putDateTime, so every
+ * field of User and Event round-trips exactly, nulls included. Passwords are written as
+ * the user holds them, a PasswordHasher hash for every user created since hashing.
+ */
+final class MutationCodec {
+    static final int ADD_USER = 1;
+    static final int RENAME_USER = 2;
+    static final int ADD_FRIEND = 3;
+    static final int ADD_EVENT = 4;
+    static final int REMOVE_EVENT = 5;
+    static final int BATCH = 6;
+
+    private static final PriorityLevel[] PRIORITIES = PriorityLevel.values();
+    private static final int NO_PRIORITY = 0xFF;
+
+    private MutationCodec() {
+    }
+
+    static void writeUser(BinaryWriter out, User user) {
+        out.putString(user.getUserId());
+        out.putString(user.getUsername());
+        out.putString(user.getPassword());
+    }
+
+    static User readUser(BinaryReader in) {
+        return new User(in.getString(), in.getString(), in.getString());
+    }
+
+    static void writeEvent(BinaryWriter out, Event event) {
+        out.putString(event.getEventId());
+        out.putString(event.getTitle());
+        out.putDateTime(event.getStartTime());
+        out.putDateTime(event.getEndTime());
+        List<String> participants = event.getParticipants();
+        if (participants == null) {
+            out.putVarInt(0);
+        } else {
+            out.putVarInt(participants.size() + 1);
+            for (String name : participants) {
+                out.putString(name);
+            }
+        }
+        out.putByte(event.getPriority() == null ? NO_PRIORITY : event.getPriority().ordinal());
+    }
+
+    static Event readEvent(BinaryReader in) {
+        String eventId = in.getString();
+        String title = in.getString();
+        Event event = new Event(eventId, title, in.getDateTime(), in.getDateTime(), null, null);
+        int countPlusOne = in.getVarInt();
+        if (countPlusOne > 0) {
+            List<String> participants = new ArrayList<>(countPlusOne - 1);
+            for (int i = 1; i < countPlusOne; i++) {
+                participants.add(in.getString());
+            }
+            event.setParticipants(participants);
+        }
+        event.setPriority(readPriority(in.getByte()));
+        return event;
+    }
+
+    /**
+     * One mutation of a BATCH record: the user id, its type (ADD_EVENT or REMOVE_EVENT),
+     * then the event or the event id. A BATCH record is an int count and that many of these.
+     */
+    static void writeMutation(BinaryWriter out, Mutation m) {
+        out.putString(m.getUserId());
+        if (m.getType() == Mutation.Type.ADD_EVENT) {
+            out.putByte(ADD_EVENT);
+            writeEvent(out, m.getEvent());
+        } else {
+            out.putByte(REMOVE_EVENT);
+            out.putString(m.getEventId());
+        }
+    }
+
+    static Mutation readMutation(BinaryReader in) {
+        String userId = in.getString();
+        int type = in.getByte();
+        switch (type) {
+            case ADD_EVENT:
+                return Mutation.addEvent(userId, readEvent(in));
+            case REMOVE_EVENT:
+                return Mutation.removeEvent(userId, in.getString());
+            default:
+                throw new CorruptRecordException("Unknown batch mutation type: " + type);
+        }
+    }
+
+    static PriorityLevel readPriority(int b) {
+        if (b == NO_PRIORITY) {
+            return null;
+        }
+        if (b >= PRIORITIES.length) {
+            throw new CorruptRecordException("Unknown priority: " + b);
+        }
+        return PRIORITIES[b];
+    }
+
+    /**
+     * Apply one logged mutation to a DataStore
+     * @throws RuntimeException if the record cannot be decoded or the store rejects it
+     */
+    static void apply(DataStore store, int type, BinaryReader in) {
+        switch (type) {
+            case ADD_USER:
+                store.addUser(readUser(in));
+                break;
+            case RENAME_USER:
+                store.renameUser(in.getString(), in.getString());
+                break;
+            case ADD_FRIEND:
+                store.addFriendRelation(in.getString(), in.getString());
+                break;
+            case ADD_EVENT: {
+                String userId = in.getString();
+                store.addEvent(userId, readEvent(in));
+                break;
+            }
+            case REMOVE_EVENT:
+                store.removeEvent(in.getString(), in.getString());
+                break;
+            case BATCH: {
+                int count = in.getInt();
+                List<Mutation> batch = new ArrayList<>(Math.min(count, in.remaining()));
+                for (int i = 0; i < count; i++) {
+                    batch.add(readMutation(in));
+                }
+                store.applyBatch(batch);
+                break;
+            }
+            default:
+                throw new CorruptRecordException("Unknown record type: " + type);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import adt.impl.StringDictionary;
+import model.DataStore;
+import model.Event;
+import model.PartitionStore;
+import model.PriorityLevel;
+import model.User;
+
+/**
+ * Versioned binary snapshot of a DataStore: users, friend edges and events as of one
+ * write-ahead log position.
+ *
+ * File layout (big-endian), every section a run of fixed-width records:
+ *   header       HEADER_BYTES: magic, version, lsn, counts and section offsets, CRC32
+ *   users        USER_BYTES each:  userId, username, password      (string refs)
+ *   edges        EDGE_BYTES each:  userId, userId                   (each friendship once)
+ *   events       EVENT_BYTES each: owner, eventId, title (string refs), start second,
+ *                start nano, end second, end nano, first participant, participant count,
+ *                priority
+ *   participants 4 bytes each: username string ref
+ *   string index 4 bytes each: end offset of string i in the string data
+ *   string data  UTF-8 bytes of every distinct string
+ *
+ * A string ref is an index into the string table, -1 for null. Each distinct string is
+ * stored once, so repeated titles, owners and participant names cost 4 bytes per use.
+ * The CRC32 covers everything after the header. Files are written to a temporary name
+ * and renamed, so a crash never leaves a half-written snapshot under the final name.
+ *
+ * Loading maps the file with FileChannel.map, decodes the string table and the record
+ * sections in parallel, and hands the result to DataStore.loadBulk, which rebuilds the
+ * indexes in parallel.
+ */
+public final class Snapshot {
+
+    static final int MAGIC = 0x43414C53; // "CALS"
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 128;
+    static final int USER_BYTES = 12;
+    static final int EDGE_BYTES = 8;
+    static final int EVENT_BYTES = 48;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int NO_PRIORITY = 0xFF;
+    private static final int NULL_TIME = -1;
+    private static final PriorityLevel[] PRIORITIES = PriorityLevel.values();
+
+    private Snapshot() {
+    }
+
+    /**
+     * Point-in-time copy of the references in a DataStore, cheap enough to take on the
+     * writer's thread; encoding and writing can then happen on another thread.
+     */
+    public static final class Image {
+        final long lsn;
+        final User[] users;
+        final String[] friendships;
+        final String[] owners;
+        final Event[] events;
+
+        Image(long lsn, User[] users, String[] friendships, String[] owners, Event[] events) {
+            this.lsn = lsn;
+            this.users = users;
+            this.friendships = friendships;
+            this.owners = owners;
+            this.events = events;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public int getEventCount() {
+            return events.length;
+        }
+    }
+
+    /**
+     * Copy the current users, friendships and events of a store. Call inside
+     * DataStore.readShared if other threads may be writing to it. In lazy hydration mode
+     * each user's own events are read from the PartitionStore, since evicted users' events
+     * are not resident; an evicted event whose owner is not a user cannot be found there.
+     * @param lsn log position the store reflects
+     */
+    public static Image capture(DataStore store, long lsn) {
+        List<User> users = store.getUserMap().values();
+        List<String> friendships = new ArrayList<>();
+        for (String userId : store.getAdjacencyList().keySet()) {
+            Set<String> friends = store.getAdjacencyList().get(userId);
+            for (String friendId : friends) {
+                if (userId.compareTo(friendId) < 0) {
+                    friendships.add(userId);
+                    friendships.add(friendId);
+                }
+            }
+        }
+        List<Event> events = store.getEvents();
+        List<String> owners = new ArrayList<>(events.size());
+        for (Event event : events) {
+            owners.add(store.getEventOwner(event.getEventId()));
+        }
+        if (store.getPartitionStore() != null) {
+            addStoredEvents(store.getPartitionStore(), users, events, owners);
+        }
+        return new Image(lsn, users.toArray(new User[0]), friendships.toArray(new String[0]),
+                owners.toArray(new String[0]), events.toArray(new Event[0]));
+    }
+
+    /**
+     * Add the events each user owns in the partition store that are not resident
+     */
+    private static void addStoredEvents(PartitionStore partitions, List<User> users, List<Event> events,
+                                        List<String> owners) {
+        Set<String> resident = new HashSet<>();
+        for (Event event : events) {
+            resident.add(event.getEventId());
+        }
+        for (User user : users) {
+            PartitionStore.Partition partition = partitions.load(user.getUserId());
+            for (int i = 0; i < partition.size(); i++) {
+                Event event = partition.getEvent(i);
+                if (partition.getOwnerId(i).equals(user.getUserId()) && !resident.contains(event.getEventId())) {
+                    events.add(event);
+                    owners.add(user.getUserId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write an image to directory/snapshot-<lsn>.snap
+     * @return the file written
+     */
+    public static Path write(Image image, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, image.lsn, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        StringDictionary strings = new StringDictionary();
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SectionWriter w = new SectionWriter(out, HEADER_BYTES);
+
+            long usersPos = w.position();
+            for (User u : image.users) {
+                w.putInt(ref(strings, u.getUserId()));
+                w.putInt(ref(strings, u.getUsername()));
+                w.putInt(ref(strings, u.getPassword()));
+            }
+            long edgesPos = w.position();
+            for (String userId : image.friendships) {
+                w.putInt(ref(strings, userId));
+            }
+            long eventsPos = w.position();
+            long participantCount = 0;
+            for (int i = 0; i < image.events.length; i++) {
+                Event e = image.events[i];
+                w.putInt(ref(strings, image.owners[i]));
+                w.putInt(ref(strings, e.getEventId()));
+                w.putInt(ref(strings, e.getTitle()));
+                putTime(w, e.getStartTime());
+                putTime(w, e.getEndTime());
+                List<String> participants = e.getParticipants();
+                w.putInt((int) participantCount);
+                w.putInt(participants == null ? -1 : participants.size());
+                w.putByte(e.getPriority() == null ? NO_PRIORITY : e.getPriority().ordinal());
+                w.putByte(0);
+                w.putByte(0);
+                w.putByte(0);
+                if (participants != null) {
+                    participantCount += participants.size();
+                }
+            }
+            if (participantCount > Integer.MAX_VALUE) {
+                throw new IOException("Too many participants for snapshot format v" + VERSION);
+            }
+            long participantsPos = w.position();
+            for (Event e : image.events) {
+                if (e.getParticipants() != null) {
+                    for (String name : e.getParticipants()) {
+                        w.putInt(ref(strings, name));
+                    }
+                }
+            }
+            long stringIndexPos = w.position();
+            int stringCount = strings.size();
+            long end = 0;
+            List<byte[]> encoded = new ArrayList<>(stringCount);
+            for (int i = 0; i < stringCount; i++) {
+                byte[] utf8 = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+                encoded.add(utf8);
+                end += utf8.length;
+                if (end > Integer.MAX_VALUE) {
+                    throw new IOException("String data too large for snapshot format v" + VERSION);
+                }
+                w.putInt((int) end);
+            }
+            long stringDataPos = w.position();
+            for (byte[] utf8 : encoded) {
+                w.putBytes(utf8);
+            }
+            w.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(image.lsn);
+            header.putLong(System.currentTimeMillis());
+            header.putInt(image.users.length);
+            header.putInt(image.friendships.length / 2);
+            header.putInt(image.events.length);
+            header.putInt((int) participantCount);
+            header.putInt(stringCount);
+            header.putLong(usersPos);
+            header.putLong(edgesPos);
+            header.putLong(eventsPos);
+            header.putLong(participantsPos);
+            header.putLong(stringIndexPos);
+            header.putLong(stringDataPos);
+            header.putLong(w.position());
+            header.putInt((int) w.crc());
+            header.clear();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Load a snapshot file into a store, replacing its contents
+     * @return the log position the snapshot reflects
+     */
+    public static long load(Path file, DataStore store) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && in.read(header, header.position()) > 0) {
+                // keep reading
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new CorruptRecordException("Not a snapshot file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new CorruptRecordException("Unsupported snapshot version " + version + " in " + file);
+            }
+            long lsn = header.getLong();
+            header.getLong(); // created at
+            int userCount = header.getInt();
+            int edgeCount = header.getInt();
+            int eventCount = header.getInt();
+            int participantCount = header.getInt();
+            int stringCount = header.getInt();
+            long usersPos = header.getLong();
+            long edgesPos = header.getLong();
+            long eventsPos = header.getLong();
+            long participantsPos = header.getLong();
+            long stringIndexPos = header.getLong();
+            long stringDataPos = header.getLong();
+            long endPos = header.getLong();
+            int expectedCrc = header.getInt();
+            if (endPos != in.size()) {
+                throw new CorruptRecordException("Truncated snapshot: " + file);
+            }
+            checkCrc(in, HEADER_BYTES, endPos, expectedCrc, file);
+
+            ByteBuffer users = map(in, usersPos, (long) userCount * USER_BYTES);
+            ByteBuffer edges = map(in, edgesPos, (long) edgeCount * EDGE_BYTES);
+            ByteBuffer events = map(in, eventsPos, (long) eventCount * EVENT_BYTES);
+            ByteBuffer participants = map(in, participantsPos, (long) participantCount * 4);
+            ByteBuffer stringIndex = map(in, stringIndexPos, (long) stringCount * 4);
+            ByteBuffer stringData = map(in, stringDataPos, endPos - stringDataPos);
+
+            // Each distinct string becomes one shared String instance
+            String[] strings = new String[stringCount];
+            IntStream.range(0, stringCount).parallel().forEach(i -> {
+                int from = i == 0 ? 0 : stringIndex.getInt((i - 1) * 4);
+                int to = stringIndex.getInt(i * 4);
+                byte[] utf8 = new byte[to - from];
+                stringData.get(from, utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            });
+
+            User[] userArray = new User[userCount];
+            IntStream.range(0, userCount).parallel().forEach(i -> {
+                int p = i * USER_BYTES;
+                userArray[i] = new User(str(strings, users.getInt(p)), str(strings, users.getInt(p + 4)),
+                        str(strings, users.getInt(p + 8)));
+            });
+            String[] friendships = new String[edgeCount * 2];
+            IntStream.range(0, edgeCount * 2).parallel().forEach(i ->
+                    friendships[i] = str(strings, edges.getInt(i * 4)));
+
+            String[] owners = new String[eventCount];
+            Event[] eventArray = new Event[eventCount];
+            IntStream.range(0, eventCount).parallel().forEach(i -> {
+                int p = i * EVENT_BYTES;
+                owners[i] = str(strings, events.getInt(p));
+                int first = events.getInt(p + 36);
+                int count = events.getInt(p + 40);
+                List<String> names = null;
+                if (count >= 0) {
+                    names = new ArrayList<>(count);
+                    for (int k = 0; k < count; k++) {
+                        names.add(str(strings, participants.getInt((first + k) * 4)));
+                    }
+                }
+                eventArray[i] = new Event(str(strings, events.getInt(p + 4)), str(strings, events.getInt(p + 8)),
+                        getTime(events, p + 12), getTime(events, p + 24), names,
+                        priority(events.get(p + 44) & 0xFF));
+            });
+
+            store.loadBulk(userArray, friendships, owners, eventArray);
+            return lsn;
+        }
+    }
+
+    /**
+     * Snapshot files in a directory, newest (highest lsn) first
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : stream) {
+                result.add(p);
+            }
+        }
+        Collections.sort(result, (a, b) -> Long.compare(lsnOf(b), lsnOf(a)));
+        return result;
+    }
+
+    /**
+     * Log position a snapshot file reflects, from its name
+     */
+    public static long lsnOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static int ref(StringDictionary strings, String s) {
+        return s == null ? -1 : strings.encode(s);
+    }
+
+    private static String str(String[] strings, int ref) {
+        if (ref == -1) {
+            return null;
+        }
+        if (ref < 0 || ref >= strings.length) {
+            throw new CorruptRecordException("Bad string reference: " + ref);
+        }
+        return strings[ref];
+    }
+
+    private static void putTime(SectionWriter w, LocalDateTime time) throws IOException {
+        if (time == null) {
+            w.putLong(0);
+            w.putInt(NULL_TIME);
+        } else {
+            w.putLong(time.toEpochSecond(ZoneOffset.UTC));
+            w.putInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime getTime(ByteBuffer b, int p) {
+        int nano = b.getInt(p + 8);
+        return nano == NULL_TIME ? null : LocalDateTime.ofEpochSecond(b.getLong(p), nano, ZoneOffset.UTC);
+    }
+
+    private static PriorityLevel priority(int b) {
+        if (b == NO_PRIORITY) {
+            return null;
+        }
+        if (b >= PRIORITIES.length) {
+            throw new CorruptRecordException("Unknown priority: " + b);
+        }
+        return PRIORITIES[b];
+    }
+
+    private static ByteBuffer map(FileChannel in, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section larger than 2 GB");
+        }
+        return in.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static void checkCrc(FileChannel in, long from, long to, int expected, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        long chunk = 1L << 30;
+        for (long p = from; p < to; p += chunk) {
+            crc.update(in.map(FileChannel.MapMode.READ_ONLY, p, Math.min(chunk, to - p)));
+        }
+        if ((int) crc.getValue() != expected) {
+            throw new CorruptRecordException("Snapshot checksum mismatch: " + file);
+        }
+    }
+
+    /**
+     * Buffered sequential writer that also keeps a running CRC32 of what it wrote
+     */
+    private static final class SectionWriter {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        SectionWriter(FileChannel out, long start) throws IOException {
+            this.out = out;
+            this.position = start;
+            out.position(start);
+        }
+
+        void putByte(int b) throws IOException {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buffer.putLong(v);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        long crc() {
+            return crc.getValue();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            position += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+    }
+}
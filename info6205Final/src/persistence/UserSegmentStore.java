@@ -0,0 +1,309 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import adt.MyMap;
+import adt.impl.HashMap;
+import model.DataStore;
+import model.Event;
+import model.PartitionStore;
+
+/**
+ * UserSegmentStore:
+ *  - PartitionStore with one append-only segment file per user, holding every event the
+ *    user created or is invited to, so hydrating a user is one sequential file read.
+ *  - Record layout (big-endian):
+ *      int  payload length
+ *      int  CRC32 of the type byte and payload
+ *      byte type (ADD or REMOVE)
+ *      payload: ADD = owner userId + MutationCodec event, REMOVE = eventId
+ *  - Loading replays the records in order (a later ADD for the same eventId replaces the
+ *    earlier one), cuts off a torn record left by a crash, and rewrites the segment once
+ *    superseded records outnumber live ones.
+ *  - ownerOf reads every segment once to index the owner of each event, then keeps that
+ *    index up to date as events are added and removed.
+ *  - Appends are left to the OS to flush, like FsyncPolicy.OS.
+ */
+public class UserSegmentStore implements PartitionStore {
+    static final int ADD = 1;
+    static final int REMOVE = 2;
+
+    private static final int RECORD_HEADER_BYTES = 9;
+    // Dead records a segment may carry before load rewrites it
+    private static final int COMPACT_SLACK = 16;
+
+    private final Path directory;
+    private final BinaryWriter record = new BinaryWriter(256);
+    private final CRC32 crc = new CRC32();
+    private long loads;
+    private long bytesRead;
+    private long compactions;
+
+    // eventId -> owner userId of every stored event; built on the first ownerOf call
+    private MyMap<String, String> owners;
+
+    /**
+     * Records replayed from one segment file.
+     */
+    private static final class Replayed {
+        // eventId -> {owner, event}, in first-added order
+        final LinkedHashMap<String, Object[]> live = new LinkedHashMap<>();
+        int records;
+        int end;   // offset after the last intact record
+    }
+
+    public UserSegmentStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Write every event of a fully resident DataStore into fresh segments under directory,
+     * replacing existing ones, e.g. before switching the store to lazy hydration.
+     * @return the number of segment files written
+     * @throws IllegalStateException if the store is in lazy hydration mode, where not
+     *         every event is resident
+     */
+    public static int write(DataStore store, Path directory) throws IOException {
+        if (store.getPartitionStore() != null) {
+            throw new IllegalStateException("Store is in lazy hydration mode; its events are not all resident");
+        }
+        UserSegmentStore segments = new UserSegmentStore(directory);
+        MyMap<String, BinaryWriter> byUser = store.readShared(() -> {
+            MyMap<String, BinaryWriter> records = new HashMap<>();
+            for (Event event : store.getEvents()) {
+                String ownerId = store.getEventOwner(event.getEventId());
+                segments.encodeAdd(ownerId, event);
+                appendTo(records, ownerId, segments.record);
+                for (String inviteeId : store.getEventInvitees(event.getEventId())) {
+                    appendTo(records, inviteeId, segments.record);
+                }
+            }
+            return records;
+        });
+        for (String userId : byUser.keySet()) {
+            BinaryWriter out = byUser.get(userId);
+            Files.write(segments.segmentFile(userId), out.toByteArray());
+        }
+        return byUser.size();
+    }
+
+    private static void appendTo(MyMap<String, BinaryWriter> byUser, String userId, BinaryWriter record) {
+        BinaryWriter out = byUser.get(userId);
+        if (out == null) {
+            out = new BinaryWriter(1024);
+            byUser.put(userId, out);
+        }
+        out.putBytes(record.array(), 0, record.size());
+    }
+
+    @Override
+    public synchronized Partition load(String userId) {
+        Path file = segmentFile(userId);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return new Partition();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        loads++;
+        bytesRead += bytes.length;
+
+        Replayed replayed = replay(file, bytes);
+        Partition partition = new Partition();
+        for (Object[] entry : replayed.live.values()) {
+            partition.add((String) entry[0], (Event) entry[1]);
+        }
+        try {
+            if (replayed.end < bytes.length || replayed.records > 2 * replayed.live.size() + COMPACT_SLACK) {
+                rewrite(file, partition);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return partition;
+    }
+
+    @Override
+    public synchronized String ownerOf(String eventId) {
+        if (owners == null) {
+            owners = indexOwners();
+        }
+        return owners.get(eventId);
+    }
+
+    private MyMap<String, String> indexOwners() {
+        MyMap<String, String> index = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.seg")) {
+            for (Path file : files) {
+                for (Object[] entry : replay(file, Files.readAllBytes(file)).live.values()) {
+                    index.put(((Event) entry[1]).getEventId(), (String) entry[0]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return index;
+    }
+
+    /**
+     * Replay a segment's records in order, stopping at the first torn or corrupt one.
+     */
+    private Replayed replay(Path file, byte[] bytes) {
+        Replayed replayed = new Replayed();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() - 1) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, start + 8, 1 + length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            int type = buffer.get();
+            BinaryReader in = new BinaryReader(ByteBuffer.wrap(bytes, buffer.position(), length).slice());
+            if (type == ADD) {
+                String ownerId = in.getString();
+                Event event = MutationCodec.readEvent(in);
+                replayed.live.put(event.getEventId(), new Object[] { ownerId, event });
+            } else if (type == REMOVE) {
+                replayed.live.remove(in.getString());
+            } else {
+                throw new CorruptRecordException("Unknown segment record type " + type + " in " + file);
+            }
+            buffer.position(buffer.position() + length);
+            replayed.records++;
+            replayed.end = buffer.position();
+        }
+        return replayed;
+    }
+
+    @Override
+    public synchronized void eventAdded(String ownerId, List<String> inviteeIds, Event event) {
+        encodeAdd(ownerId, event);
+        appendToSegments(ownerId, inviteeIds);
+        if (owners != null) {
+            owners.put(event.getEventId(), ownerId);
+        }
+    }
+
+    @Override
+    public synchronized void eventRemoved(String ownerId, List<String> inviteeIds, String eventId) {
+        record.reset();
+        record.putInt(0);
+        record.putInt(0);
+        record.putByte(REMOVE);
+        record.putString(eventId);
+        seal();
+        appendToSegments(ownerId, inviteeIds);
+        if (owners != null) {
+            owners.remove(eventId);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public synchronized long getLoadCount() {
+        return loads;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactions;
+    }
+
+    /**
+     * Replace a segment with one ADD record per live event.
+     */
+    private void rewrite(Path file, Partition partition) throws IOException {
+        BinaryWriter out = new BinaryWriter(1024);
+        for (int i = 0; i < partition.size(); i++) {
+            encodeAdd(partition.getOwnerId(i), partition.getEvent(i));
+            out.putBytes(record.array(), 0, record.size());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, out.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        compactions++;
+    }
+
+    private void encodeAdd(String ownerId, Event event) {
+        record.reset();
+        record.putInt(0);
+        record.putInt(0);
+        record.putByte(ADD);
+        record.putString(ownerId);
+        MutationCodec.writeEvent(record, event);
+        seal();
+    }
+
+    /**
+     * Fill in the length and CRC of the record in the buffer.
+     */
+    private void seal() {
+        record.setInt(0, record.size() - RECORD_HEADER_BYTES);
+        crc.reset();
+        crc.update(record.array(), 8, record.size() - 8);
+        record.setInt(4, (int) crc.getValue());
+    }
+
+    private void appendToSegments(String ownerId, List<String> inviteeIds) {
+        try {
+            append(ownerId);
+            for (String inviteeId : inviteeIds) {
+                append(inviteeId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(String userId) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(userId), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(record.array(), 0, record.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * <userId>.seg for ids made of letters, digits, '-' and '_' (generated ids, UUIDs);
+     * any other id is hex-encoded as <hex>.x.seg so it cannot clash with those.
+     */
+    Path segmentFile(String userId) {
+        if (!userId.isEmpty() && userId.length() <= 100 && userId.matches("[A-Za-z0-9_-]+")) {
+            return directory.resolve(userId + ".seg");
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : userId.getBytes(StandardCharsets.UTF_8)) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(hex + ".x.seg");
+    }
+}
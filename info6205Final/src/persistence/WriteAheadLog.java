@@ -0,0 +1,599 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import logging.Logger;
+
+/**
+ * Append-only binary write-ahead log stored as a directory of segment files.
+ *
+ * Record layout (big-endian):
+ *   int  payload length
+ *   int  CRC32 of the bytes from lsn to the end of the payload
+ *   long lsn (log sequence number, 1, 2, 3, ...)
+ *   byte record type
+ *   payload
+ *
+ * Segments are named wal-<first lsn>.log and a new one is started once the current one
+ * exceeds the segment size. Appends are copied into an in-memory batch under a short
+ * lock; one appending thread at a time then writes the whole batch with a single
+ * FileChannel write (and fsync, for EVERY_OP), so concurrent writers share the cost
+ * (group commit). A torn record at the end of the last segment, left by a crash in the
+ * middle of a write, is cut off when the log is opened.
+ *
+ * Once a checkpoint covers a prefix of the log, roll() closes the current segment and
+ * deleteSegmentsBefore removes the closed segments the checkpoint makes redundant.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger LOG = Logger.get("WAL");
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    public static final int MAX_PAYLOAD_BYTES = 16 << 20;
+
+    static final int HEADER_BYTES = 4 + 4 + 8 + 1;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Callback for replayed records
+     */
+    public interface RecordHandler {
+        /**
+         * @param lsn the record's sequence number
+         * @param type the record type passed to append
+         * @param payload reader positioned at the start of the payload
+         */
+        void accept(long lsn, int type, BinaryReader payload);
+    }
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long segmentBytes;
+
+    // Current segment; only touched by the thread holding the flushing flag
+    private FileChannel channel;
+    private long segmentSize;
+
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private BinaryWriter pending = new BinaryWriter(64 << 10);
+    private BinaryWriter spare = new BinaryWriter(64 << 10);
+    private long pendingFirstLsn;   // lsn of the first record in pending, 0 if empty
+    private long lastLsn;           // last lsn handed out
+    private long writtenLsn;        // last lsn written to the channel
+    private long durableLsn;        // last lsn forced to disk
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    // Metrics
+    private long appendCount;
+    private long writeCount;
+    private long fsyncCount;
+    private long bytesWritten;
+
+    private final ScheduledExecutorService flusher;
+
+    private WriteAheadLog(Path directory, FsyncPolicy policy, long intervalMillis, long segmentBytes)
+            throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.segmentBytes = segmentBytes;
+        recover();
+        if (policy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::backgroundSync, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Open (or create) the log in a directory, cutting off a torn tail if there is one
+     * @param directory directory holding the segment files
+     * @param policy when appends are fsynced
+     * @param intervalMillis fsync interval for FsyncPolicy.INTERVAL, ignored otherwise
+     */
+    public static WriteAheadLog open(Path directory, FsyncPolicy policy, long intervalMillis)
+            throws IOException {
+        return open(directory, policy, intervalMillis, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public static WriteAheadLog open(Path directory, FsyncPolicy policy, long intervalMillis,
+                                     long segmentBytes) throws IOException {
+        if (policy == null) {
+            throw new IllegalArgumentException("Fsync policy cannot be null");
+        }
+        if (policy == FsyncPolicy.INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("Fsync interval must be positive");
+        }
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        Files.createDirectories(directory);
+        return new WriteAheadLog(directory, policy, intervalMillis, segmentBytes);
+    }
+
+    /**
+     * Append a record. Depending on the fsync policy this returns once the record is
+     * fsynced (EVERY_OP) or once it has been written to the file (INTERVAL, OS).
+     * @param type record type, 0..255
+     * @param payload record body
+     * @return the record's lsn
+     */
+    public long append(int type, BinaryWriter payload) {
+        long lsn = enqueue(type, payload);
+        awaitDurable(lsn);
+        return lsn;
+    }
+
+    /**
+     * First half of append: give the record its lsn and copy it into the pending batch,
+     * without any I/O, so a caller can do this under its own locks and call awaitDurable
+     * after releasing them.
+     * @return the record's lsn
+     */
+    public long enqueue(int type, BinaryWriter payload) {
+        int length = payload.size();
+        if (length > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Record too large: " + length + " bytes");
+        }
+        long lsn;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            checkFailure();
+            lsn = ++lastLsn;
+            if (pendingFirstLsn == 0) {
+                pendingFirstLsn = lsn;
+            }
+            int start = pending.size();
+            pending.putInt(length);
+            pending.putInt(0);
+            pending.putLong(lsn);
+            pending.putByte(type);
+            pending.putBytes(payload.array(), 0, length);
+            crc.reset();
+            crc.update(pending.array(), start + 8, HEADER_BYTES - 8 + length);
+            pending.setInt(start + 4, (int) crc.getValue());
+            appendCount++;
+        }
+        return lsn;
+    }
+
+    /**
+     * Second half of append: return once every record up to lsn is fsynced (EVERY_OP)
+     * or written to the file (INTERVAL, OS)
+     */
+    public void awaitDurable(long lsn) {
+        sync(lsn, policy == FsyncPolicy.EVERY_OP, false);
+    }
+
+    /**
+     * Write and fsync everything appended so far
+     */
+    public void sync() {
+        long target;
+        synchronized (lock) {
+            target = lastLsn;
+        }
+        sync(target, true, false);
+    }
+
+    /**
+     * Write and fsync everything appended so far, then start a new segment, so that every
+     * record up to the returned lsn is in a closed segment. Appends may continue meanwhile.
+     * @return the last lsn in the closed segments
+     */
+    public long roll() {
+        long target;
+        synchronized (lock) {
+            target = lastLsn;
+        }
+        return sync(target, true, true);
+    }
+
+    /**
+     * Read every record with lsn > afterLsn, in order. Meant for startup, before appending;
+     * records appended while this runs may or may not be seen.
+     * @return the number of records passed to the handler
+     */
+    public long replay(long afterLsn, RecordHandler handler) throws IOException {
+        return replay(afterLsn, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Read every record with afterLsn < lsn <= uptoLsn, in order. Safe while appending
+     * if uptoLsn was returned by roll(), since the active segment is then not read.
+     * @return the number of records passed to the handler
+     */
+    public long replay(long afterLsn, long uptoLsn, RecordHandler handler) throws IOException {
+        sync();
+        long count = 0;
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (firstLsnOf(segments.get(i)) > uptoLsn) {
+                break;
+            }
+            if (i + 1 < segments.size() && firstLsnOf(segments.get(i + 1)) <= afterLsn + 1) {
+                continue; // every record in this segment is <= afterLsn
+            }
+            // Only the segment being appended to may end in a partly written record
+            boolean active = i == segments.size() - 1;
+            count += scan(segments.get(i), afterLsn, uptoLsn, handler, active, false);
+        }
+        return count;
+    }
+
+    /**
+     * Delete closed segments whose records all have lsn <= lsn. The segment being
+     * appended to is never deleted.
+     * @return the number of bytes deleted
+     */
+    public long deleteSegmentsBefore(long lsn) throws IOException {
+        List<Path> segments = segments();
+        long deleted = 0;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsnOf(segments.get(i + 1)) > lsn + 1) {
+                break;
+            }
+            deleted += Files.size(segments.get(i));
+            Files.delete(segments.get(i));
+        }
+        return deleted;
+    }
+
+    /**
+     * Make the next lsn handed out at least lsn + 1, e.g. when a snapshot is newer than
+     * every remaining segment. Meant for startup, before appending.
+     */
+    public void advanceTo(long lsn) throws IOException {
+        synchronized (lock) {
+            if (lastLsn >= lsn) {
+                return;
+            }
+            if (flushing || pendingFirstLsn != 0) {
+                throw new IllegalStateException("Cannot advance a log with writes in flight");
+            }
+            lastLsn = lsn;
+            writtenLsn = lsn;
+            durableLsn = lsn;
+            rollSegment(lsn + 1);
+        }
+    }
+
+    /**
+     * Total size of the segment files
+     */
+    public long sizeOnDisk() throws IOException {
+        long bytes = 0;
+        for (Path segment : segments()) {
+            bytes += Files.size(segment);
+        }
+        return bytes;
+    }
+
+    /**
+     * Segment files in lsn order
+     */
+    public List<Path> segments() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : stream) {
+                result.add(p);
+            }
+        }
+        Collections.sort(result, (a, b) -> Long.compare(firstLsnOf(a), firstLsnOf(b)));
+        return result;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getLastLsn() {
+        synchronized (lock) {
+            return lastLsn;
+        }
+    }
+
+    public long getDurableLsn() {
+        synchronized (lock) {
+            return durableLsn;
+        }
+    }
+
+    public long getAppendCount() {
+        synchronized (lock) {
+            return appendCount;
+        }
+    }
+
+    /**
+     * Number of batched channel writes; appendCount / writeCount is the group-commit factor
+     */
+    public long getWriteCount() {
+        synchronized (lock) {
+            return writeCount;
+        }
+    }
+
+    public long getFsyncCount() {
+        synchronized (lock) {
+            return fsyncCount;
+        }
+    }
+
+    public long getBytesWritten() {
+        synchronized (lock) {
+            return bytesWritten;
+        }
+    }
+
+    /**
+     * Fsync outstanding records and close the current segment
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (flusher != null) {
+            // Not shutdownNow: interrupting a thread inside FileChannel.force closes the channel
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make sure every record up to lsn is written (and forced, if force is set).
+     * The first thread to get here writes the whole pending batch; the rest wait for it.
+     * @param roll also start a new segment after the batch (requires force)
+     * @return the last lsn written by this call, or lsn if it had nothing to do
+     */
+    private long sync(long lsn, boolean force, boolean roll) {
+        BinaryWriter batch;
+        long batchFirst;
+        long batchLast;
+        synchronized (lock) {
+            while (true) {
+                checkFailure();
+                if (!roll && (force ? durableLsn : writtenLsn) >= lsn) {
+                    return lsn;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the log", e);
+                }
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            batchFirst = pendingFirstLsn;
+            batchLast = lastLsn;
+            pendingFirstLsn = 0;
+        }
+
+        IOException error = null;
+        try {
+            if (batch.size() > 0) {
+                if (segmentSize >= segmentBytes) {
+                    rollSegment(batchFirst);
+                }
+                ByteBuffer buffer = batch.toByteBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                segmentSize += batch.size();
+            }
+            if (force) {
+                channel.force(false);
+            }
+            if (roll && segmentSize > 0) {
+                rollSegment(batchLast + 1);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (lock) {
+            if (error == null) {
+                if (batch.size() > 0) {
+                    writeCount++;
+                    bytesWritten += batch.size();
+                }
+                writtenLsn = batchLast;
+                if (force) {
+                    fsyncCount++;
+                    durableLsn = batchLast;
+                }
+            } else {
+                failure = error;
+            }
+            batch.reset();
+            spare = batch;
+            flushing = false;
+            lock.notifyAll();
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+        return batchLast;
+    }
+
+    private void backgroundSync() {
+        try {
+            long target;
+            synchronized (lock) {
+                if (durableLsn >= lastLsn) {
+                    return;
+                }
+                target = lastLsn;
+            }
+            sync(target, true, false);
+        } catch (RuntimeException e) {
+            LOG.warn("WAL: background fsync failed: {}", e.getMessage());
+        }
+    }
+
+    private void rollSegment(long firstLsn) throws IOException {
+        channel.force(false);
+        channel.close();
+        channel = openSegment(firstLsn);
+        segmentSize = 0;
+    }
+
+    /**
+     * Find the last valid record, truncate anything after it and reopen the last segment
+     */
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            channel = openSegment(1);
+            segmentSize = 0;
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long[] lastSeen = {firstLsnOf(last) - 1};
+        scan(last, Long.MIN_VALUE, Long.MAX_VALUE, (lsn, type, payload) -> lastSeen[0] = lsn, true, true);
+        lastLsn = lastSeen[0];
+        writtenLsn = lastLsn;
+        durableLsn = lastLsn;
+        channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        segmentSize = channel.size();
+        channel.position(segmentSize);
+    }
+
+    /**
+     * Read the records of one segment, stopping after uptoLsn.
+     * @param allowTornTail stop quietly at an invalid record instead of failing
+     * @param truncateTail also cut the file after the last valid record
+     * @return the number of records with afterLsn < lsn <= uptoLsn
+     */
+    private long scan(Path segment, long afterLsn, long uptoLsn, RecordHandler handler,
+                      boolean allowTornTail, boolean truncateTail) throws IOException {
+        long count = 0;
+        try (FileChannel in = FileChannel.open(segment, truncateTail
+                ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[] {StandardOpenOption.READ})) {
+            long size = in.size();
+            if (size == 0) {
+                return 0;
+            }
+            // A file that is about to be truncated is read into the heap rather than mapped,
+            // since some platforms refuse to truncate a mapped file
+            ByteBuffer map;
+            if (truncateTail) {
+                map = ByteBuffer.allocate((int) size);
+                while (map.hasRemaining() && in.read(map) >= 0) {
+                    // keep reading
+                }
+                map.flip();
+            } else {
+                map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            CRC32 check = new CRC32();
+            int validEnd = 0;
+            while (map.remaining() >= HEADER_BYTES) {
+                int start = map.position();
+                int length = map.getInt();
+                int expectedCrc = map.getInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES || map.remaining() < HEADER_BYTES - 8 + length) {
+                    break;
+                }
+                ByteBuffer body = map.slice(start + 8, HEADER_BYTES - 8 + length);
+                check.reset();
+                check.update(body);
+                if ((int) check.getValue() != expectedCrc) {
+                    break;
+                }
+                long lsn = map.getLong();
+                int type = map.get() & 0xFF;
+                if (lsn > uptoLsn) {
+                    return count;
+                }
+                if (lsn > afterLsn) {
+                    handler.accept(lsn, type, new BinaryReader(map.slice(map.position(), length)));
+                    count++;
+                }
+                map.position(map.position() + length);
+                validEnd = map.position();
+            }
+            if (validEnd < map.limit()) {
+                if (!allowTornTail) {
+                    throw new CorruptRecordException("Corrupt record in " + segment + " at offset " + validEnd);
+                }
+                if (!truncateTail) {
+                    return count;
+                }
+                LOG.warn("WAL: truncating torn tail of {} at offset {}", segment, validEnd);
+                in.truncate(validEnd);
+                in.force(true);
+            }
+        }
+        return count;
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+    }
+
+    static long firstLsnOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier", failure);
+        }
+    }
+}
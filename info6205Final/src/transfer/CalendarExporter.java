@@ -0,0 +1,454 @@
+package transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import logging.Logger;
+import model.DataStore;
+import model.Event;
+import model.EventPage;
+import model.PriorityLevel;
+
+/**
+ * CalendarExporter:
+ *  - Streams one user's owned and invited events, in start-time order, as CSV
+ *    (RFC 4180) or iCalendar (RFC 5545).
+ *  - Events are fetched a page at a time through DataStore.getUserEventsInRange with a
+ *    cursor, and encoded straight into one reusable direct ByteBuffer: UTF-8, numbers and
+ *    times are written byte by byte, so no String is built per event. The buffer is
+ *    written to the channel whenever it fills, so heap use does not grow with the
+ *    number of events.
+ *  - ICS output uses floating local times, maps HIGH / MEDIUM / LOW to PRIORITY 1 / 5 / 9
+ *    and writes participants as ATTENDEE;CN=<username>, which IcsImporter reads back.
+ *  - Not thread-safe: each thread needs its own exporter.
+ */
+public class CalendarExporter {
+
+    private static final Logger LOG = Logger.get(CalendarExporter.class);
+
+    public enum Format { CSV, ICS }
+
+    public static final int DEFAULT_BUFFER_BYTES = 256 << 10;
+    public static final int PAGE_SIZE = 1024;
+
+    // Longest UTF-8 encoding of one char (a surrogate pair is written as 4 bytes for 2 chars)
+    private static final int MAX_CHAR_BYTES = 4;
+    // RFC 5545 content lines are folded after 75 octets
+    private static final int ICS_LINE_OCTETS = 75;
+
+    private static final byte[] CSV_HEADER = ascii("eventId,title,start,end,priority,participants\r\n");
+    private static final byte[] ICS_HEADER = ascii(
+            "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//info6205//Calendar//EN\r\n");
+    private static final byte[] ICS_FOOTER = ascii("END:VCALENDAR\r\n");
+    private static final String MAILTO = "mailto:";
+
+    private final DataStore dataStore;
+    private final ByteBuffer buffer;
+    private WritableByteChannel channel;
+    private long bytesWritten;
+    private int lineOctets; // octets on the current ICS content line, for folding
+
+    public CalendarExporter(DataStore dataStore) {
+        this(dataStore, DEFAULT_BUFFER_BYTES);
+    }
+
+    public CalendarExporter(DataStore dataStore, int bufferBytes) {
+        if (dataStore == null || bufferBytes < 1024) {
+            throw new IllegalArgumentException("Data store required and buffer must be at least 1 KB");
+        }
+        this.dataStore = dataStore;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * Export all of a user's events to a file, replacing it
+     * @return the number of events written
+     */
+    public long exportAll(String userId, Format format, Path file) throws IOException {
+        return export(userId, LocalDateTime.MIN, LocalDateTime.MAX, format, file);
+    }
+
+    /**
+     * Export the user's events starting in [from, to) to a file, replacing it
+     * @return the number of events written
+     */
+    public long export(String userId, LocalDateTime from, LocalDateTime to, Format format, Path file)
+            throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return export(userId, from, to, format, out);
+        }
+    }
+
+    /**
+     * Export the user's events starting in [from, to) to a channel, which is left open
+     * @return the number of events written
+     */
+    public long export(String userId, LocalDateTime from, LocalDateTime to, Format format,
+                       WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        channel = out;
+        bytesWritten = 0;
+        buffer.clear();
+        putBytes(format == Format.CSV ? CSV_HEADER : ICS_HEADER);
+        String stamp = format == Format.ICS ? icsStamp(LocalDateTime.now(ZoneOffset.UTC)) : null;
+
+        long count = 0;
+        EventPage.Cursor cursor = null;
+        do {
+            EventPage page = dataStore.getUserEventsInRange(userId, from, to, cursor, PAGE_SIZE);
+            List<Event> events = page.getEvents();
+            for (int i = 0; i < events.size(); i++) {
+                if (format == Format.CSV) {
+                    writeCsv(events.get(i));
+                } else {
+                    writeIcs(events.get(i), stamp);
+                }
+            }
+            count += events.size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        if (format == Format.ICS) {
+            putBytes(ICS_FOOTER);
+        }
+        drain();
+        channel = null;
+        LOG.info("CalendarExporter: wrote {} events ({} KB) for userId={} in {} ms",
+                count, bytesWritten >> 10, userId, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    /**
+     * Bytes written by the last export
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // ===== CSV =====
+
+    private void writeCsv(Event e) throws IOException {
+        putCsvField(e.getEventId());
+        putByte(',');
+        putCsvField(e.getTitle());
+        putByte(',');
+        putIsoTime(e.getStartTime());
+        putByte(',');
+        putIsoTime(e.getEndTime());
+        putByte(',');
+        if (e.getPriority() != null) {
+            putAscii(e.getPriority().name());
+        }
+        putByte(',');
+        List<String> participants = e.getParticipants();
+        if (participants != null && !participants.isEmpty()) {
+            boolean quote = false;
+            for (int i = 0; i < participants.size(); i++) {
+                quote |= needsCsvQuotes(participants.get(i)) || participants.get(i).indexOf(';') >= 0;
+            }
+            if (quote) putByte('"');
+            for (int i = 0; i < participants.size(); i++) {
+                if (i > 0) putByte(';');
+                putUtf8(participants.get(i), quote);
+            }
+            if (quote) putByte('"');
+        }
+        putByte('\r');
+        putByte('\n');
+    }
+
+    private void putCsvField(String s) throws IOException {
+        if (s == null) {
+            return;
+        }
+        boolean quote = needsCsvQuotes(s);
+        if (quote) putByte('"');
+        putUtf8(s, quote);
+        if (quote) putByte('"');
+    }
+
+    private static boolean needsCsvQuotes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // yyyy-MM-ddTHH:mm:ss, the same as LocalDateTime.toString for whole seconds
+    private void putIsoTime(LocalDateTime t) throws IOException {
+        if (t == null) {
+            return;
+        }
+        putDigits(t.getYear(), 4);
+        putByte('-');
+        putDigits(t.getMonthValue(), 2);
+        putByte('-');
+        putDigits(t.getDayOfMonth(), 2);
+        putByte('T');
+        putDigits(t.getHour(), 2);
+        putByte(':');
+        putDigits(t.getMinute(), 2);
+        putByte(':');
+        putDigits(t.getSecond(), 2);
+    }
+
+    // ===== ICS =====
+
+    private void writeIcs(Event e, String stamp) throws IOException {
+        putIcsLine("BEGIN:VEVENT");
+        startIcsLine("UID:");
+        putIcsText(e.getEventId());
+        endIcsLine();
+        startIcsLine("DTSTAMP:");
+        putIcsText(stamp);
+        endIcsLine();
+        if (e.getStartTime() != null) {
+            startIcsLine("DTSTART:");
+            putIcsTime(e.getStartTime());
+            endIcsLine();
+        }
+        if (e.getEndTime() != null) {
+            startIcsLine("DTEND:");
+            putIcsTime(e.getEndTime());
+            endIcsLine();
+        }
+        if (e.getTitle() != null) {
+            startIcsLine("SUMMARY:");
+            putIcsText(e.getTitle());
+            endIcsLine();
+        }
+        if (e.getPriority() != null) {
+            startIcsLine("PRIORITY:");
+            putByte(e.getPriority() == PriorityLevel.HIGH ? '1' : e.getPriority() == PriorityLevel.MEDIUM ? '5' : '9');
+            endIcsLine();
+        }
+        List<String> participants = e.getParticipants();
+        if (participants != null) {
+            for (int i = 0; i < participants.size(); i++) {
+                String name = participants.get(i);
+                startIcsLine("ATTENDEE;CN=\"");
+                putIcsParam(name);
+                putIcsFolded('"');
+                putIcsFolded(':');
+                for (int j = 0; j < MAILTO.length(); j++) {
+                    putIcsFolded(MAILTO.charAt(j));
+                }
+                putIcsParam(name);
+                endIcsLine();
+            }
+        }
+        putIcsLine("END:VEVENT");
+    }
+
+    private void putIcsLine(String ascii) throws IOException {
+        startIcsLine(ascii);
+        endIcsLine();
+    }
+
+    private void startIcsLine(String asciiName) throws IOException {
+        lineOctets = 0;
+        for (int i = 0; i < asciiName.length(); i++) {
+            putIcsFolded(asciiName.charAt(i));
+        }
+    }
+
+    private void endIcsLine() throws IOException {
+        putByte('\r');
+        putByte('\n');
+        lineOctets = 0;
+    }
+
+    // TEXT escaping: backslash, semicolon, comma and newline
+    private void putIcsText(String s) throws IOException {
+        if (s == null) {
+            return;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == ';' || c == ',') {
+                putIcsFolded('\\');
+                putIcsFolded(c);
+            } else if (c == '\n') {
+                putIcsFolded('\\');
+                putIcsFolded('n');
+            } else if (c == '\r') {
+                continue;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()) {
+                putIcsCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                putIcsFolded(c);
+            }
+        }
+    }
+
+    // Quoted parameter values cannot contain '"' or line breaks
+    private void putIcsParam(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\r' || c == '\n') {
+                putIcsFolded('\'');
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()) {
+                putIcsCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                putIcsFolded(c);
+            }
+        }
+    }
+
+    private void putIcsTime(LocalDateTime t) throws IOException {
+        putDigits(t.getYear(), 4);
+        putDigits(t.getMonthValue(), 2);
+        putDigits(t.getDayOfMonth(), 2);
+        putByte('T');
+        putDigits(t.getHour(), 2);
+        putDigits(t.getMinute(), 2);
+        putDigits(t.getSecond(), 2);
+        lineOctets += 15;
+    }
+
+    private static String icsStamp(LocalDateTime utc) {
+        return String.format("%04d%02d%02dT%02d%02d%02dZ", utc.getYear(), utc.getMonthValue(),
+                utc.getDayOfMonth(), utc.getHour(), utc.getMinute(), utc.getSecond());
+    }
+
+    /**
+     * Write one BMP char, folding the line first if its UTF-8 bytes would pass 75 octets
+     */
+    private void putIcsFolded(char c) throws IOException {
+        int octets = c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        foldIfNeeded(octets);
+        putChar(c);
+        lineOctets += octets;
+    }
+
+    private void putIcsCodePoint(int codePoint) throws IOException {
+        foldIfNeeded(4);
+        putCodePoint(codePoint);
+        lineOctets += 4;
+    }
+
+    private void foldIfNeeded(int octets) throws IOException {
+        if (lineOctets + octets > ICS_LINE_OCTETS) {
+            putByte('\r');
+            putByte('\n');
+            putByte(' ');
+            lineOctets = 1;
+        }
+    }
+
+    // ===== Buffer =====
+
+    /**
+     * UTF-8 of s; with doubleQuotes, '"' is written twice (CSV escaping)
+     */
+    private void putUtf8(String s, boolean doubleQuotes) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' && doubleQuotes) {
+                putByte('"');
+                putByte('"');
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()) {
+                putCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                putChar(c);
+            }
+        }
+    }
+
+    private void putChar(char c) throws IOException {
+        ensure(MAX_CHAR_BYTES);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?'); // unpaired surrogate
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void putCodePoint(int cp) throws IOException {
+        ensure(MAX_CHAR_BYTES);
+        buffer.put((byte) (0xF0 | (cp >> 18)));
+        buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (cp & 0x3F)));
+    }
+
+    private void putAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            putByte(s.charAt(i));
+        }
+    }
+
+    /**
+     * Zero-padded decimal of a non-negative value; years beyond 4 digits get a sign
+     */
+    private void putDigits(int value, int width) throws IOException {
+        if (value < 0 || (width == 4 && value > 9999)) {
+            putByte(value < 0 ? '-' : '+');
+            value = Math.abs(value);
+        }
+        ensure(11);
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < width; i++) {
+            buffer.put((byte) '0');
+        }
+        int position = buffer.position() + digits;
+        for (int i = 1; i <= digits; i++) {
+            buffer.put(position - i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(position);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putByte(int b) throws IOException {
+        ensure(1);
+        buffer.put((byte) b);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < s.length(); i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,456 @@
+package transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import logging.Logger;
+import model.DataStore;
+import model.Event;
+import model.PriorityLevel;
+import model.User;
+
+/**
+ * IcsImporter:
+ *  - Streams VEVENTs out of an iCalendar (RFC 5545) file into a DataStore for one owner.
+ *  - Reads the channel through a fixed buffer and unfolds lines as they arrive, so memory
+ *    is bounded by the buffer, the longest line and one batch of events, not the file.
+ *  - Parsed events are handed to DataStore.addEventsBulk every batchSize events, which
+ *    builds the per-day queues and indexes of the affected users in parallel.
+ *  - Mapping onto Event:
+ *      UID -> eventId (a new id if missing); SUMMARY -> title. A UID already used by
+ *      another user's event becomes "<ownerId>:<UID>", so the import never replaces or
+ *      takes over someone else's event, and importing the file again updates the same
+ *      events; if that id is taken by another user too, the VEVENT is skipped.
+ *      DTSTART / DTEND or DURATION -> start / end in the importer's zone; UTC ("Z") and
+ *      TZID times are converted, floating times are taken as is, DATE values are all-day;
+ *      a TZID Java does not know (e.g. Outlook's "Eastern Standard Time") counts as floating
+ *      PRIORITY 1-4 -> HIGH, 5 -> MEDIUM, 6-9 -> LOW, 0 or missing -> MEDIUM
+ *      ATTENDEE -> participant: the username of a user whose name matches the CN or the
+ *      mailto local part, otherwise the CN, otherwise the address
+ *  - VEVENTs without DTSTART are skipped; RRULE is not expanded (only the first
+ *    occurrence is imported).
+ */
+public class IcsImporter {
+
+    private static final Logger LOG = Logger.get(IcsImporter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final int MAX_LINE_CHARS = 1 << 20;
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final DataStore dataStore;
+    private final String ownerId;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ZoneId zone = ZoneId.systemDefault();
+
+    // Result of the last importFrom
+    private long imported;
+    private long skipped;
+    private long millis;
+
+    // Pending batch
+    private final List<Event> batch = new ArrayList<>();
+
+    // VEVENT being parsed
+    private boolean inEvent;
+    private int nestedDepth; // VALARM and other components inside the VEVENT
+    private String uid;
+    private String summary;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private boolean allDay;
+    private Duration duration;
+    private int priority;
+    private List<String> attendees;
+
+    public IcsImporter(DataStore dataStore, String ownerId) {
+        if (dataStore == null || ownerId == null) {
+            throw new IllegalArgumentException("Data store and owner are required");
+        }
+        this.dataStore = dataStore;
+        this.ownerId = ownerId;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Zone the imported LocalDateTimes are expressed in (default: the system zone)
+     */
+    public void setZone(ZoneId zone) {
+        if (zone == null) {
+            throw new IllegalArgumentException("Zone cannot be null");
+        }
+        this.zone = zone;
+    }
+
+    /**
+     * Import every VEVENT from the channel, which is read to the end but not closed
+     * @return the number of events added
+     */
+    public long importFrom(ReadableByteChannel channel) throws IOException {
+        long startNanos = System.nanoTime();
+        imported = 0;
+        skipped = 0;
+        inEvent = false;
+        batch.clear();
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(64 << 10);
+        CharBuffer chars = CharBuffer.allocate(64 << 10);
+        StringBuilder line = new StringBuilder();    // physical line being read
+        StringBuilder logical = new StringBuilder(); // unfolded content line
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, eof);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (eof) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\n') {
+                    endPhysicalLine(line, logical);
+                } else if (c != '\r') {
+                    if (line.length() >= MAX_LINE_CHARS) {
+                        throw new IOException("iCalendar line longer than " + MAX_LINE_CHARS + " characters");
+                    }
+                    line.append(c);
+                }
+            }
+            chars.clear();
+        }
+        endPhysicalLine(line, logical);
+        if (logical.length() > 0) {
+            contentLine(logical.toString());
+        }
+        flush();
+        millis = (System.nanoTime() - startNanos) / 1_000_000;
+        LOG.info("IcsImporter: imported {} events for userId={}, skipped {}, in {} ms",
+                imported, ownerId, skipped, millis);
+        return imported;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * A line starting with a space or tab continues the previous one (RFC 5545 folding)
+     */
+    private void endPhysicalLine(StringBuilder line, StringBuilder logical) throws IOException {
+        if (line.length() > 0 && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+            if (logical.length() + line.length() > MAX_LINE_CHARS) {
+                throw new IOException("iCalendar line longer than " + MAX_LINE_CHARS + " characters");
+            }
+            logical.append(line, 1, line.length());
+        } else {
+            if (logical.length() > 0) {
+                contentLine(logical.toString());
+            }
+            logical.setLength(0);
+            logical.append(line);
+        }
+        line.setLength(0);
+    }
+
+    /**
+     * name *(";" param) ":" value
+     */
+    private void contentLine(String text) {
+        int colon = -1;
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                colon = i;
+                break;
+            }
+        }
+        if (colon < 0) {
+            return;
+        }
+        String head = text.substring(0, colon);
+        String value = text.substring(colon + 1);
+        int semicolon = head.indexOf(';');
+        String name = (semicolon < 0 ? head : head.substring(0, semicolon)).trim().toUpperCase();
+        String params = semicolon < 0 ? "" : head.substring(semicolon + 1);
+
+        if (name.equals("BEGIN")) {
+            if (value.trim().equalsIgnoreCase("VEVENT") && !inEvent) {
+                beginEvent();
+            } else if (inEvent) {
+                nestedDepth++;
+            }
+            return;
+        }
+        if (name.equals("END")) {
+            if (inEvent && nestedDepth > 0) {
+                nestedDepth--;
+            } else if (inEvent && value.trim().equalsIgnoreCase("VEVENT")) {
+                endEvent();
+            }
+            return;
+        }
+        if (!inEvent || nestedDepth > 0) {
+            return;
+        }
+        try {
+            switch (name) {
+                case "UID":
+                    uid = unescape(value);
+                    break;
+                case "SUMMARY":
+                    summary = unescape(value);
+                    break;
+                case "DTSTART":
+                    allDay = isDate(params, value);
+                    start = parseTime(params, value);
+                    break;
+                case "DTEND":
+                    end = parseTime(params, value);
+                    break;
+                case "DURATION":
+                    duration = parseDuration(value.trim());
+                    break;
+                case "PRIORITY":
+                    priority = Integer.parseInt(value.trim());
+                    break;
+                case "ATTENDEE":
+                    attendees.add(attendeeName(params, value));
+                    break;
+                default:
+                    break;
+            }
+        } catch (DateTimeException | NumberFormatException e) {
+            // A bad property makes the event unusable only if it was DTSTART; the rest default
+            if (name.equals("DTSTART")) {
+                start = null;
+            }
+        }
+    }
+
+    private void beginEvent() {
+        inEvent = true;
+        nestedDepth = 0;
+        uid = null;
+        summary = null;
+        start = null;
+        end = null;
+        allDay = false;
+        duration = null;
+        priority = 0;
+        attendees = new ArrayList<>();
+    }
+
+    private void endEvent() {
+        inEvent = false;
+        if (start == null) {
+            skipped++;
+            return;
+        }
+        LocalDateTime finish = end;
+        if (finish == null) {
+            finish = duration != null ? start.plus(duration) : allDay ? start.plusDays(1) : start;
+        }
+        if (finish.isBefore(start)) {
+            finish = start;
+        }
+        String id = uid == null || uid.isEmpty() ? dataStore.newId() : eventIdFor(uid);
+        if (id == null) {
+            skipped++;
+            return;
+        }
+        batch.add(new Event(id, summary == null ? "" : summary, start, finish, attendees, mapPriority(priority)));
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * The UID, or the owner-qualified UID if another user owns that id; null if both are
+     * owned by other users
+     */
+    private String eventIdFor(String uid) {
+        if (isFree(uid)) {
+            return uid;
+        }
+        String qualified = ownerId + ":" + uid;
+        return isFree(qualified) ? qualified : null;
+    }
+
+    private boolean isFree(String eventId) {
+        String owner = dataStore.getEventOwner(eventId);
+        return owner == null || owner.equals(ownerId);
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        dataStore.addEventsBulk(Collections.nCopies(batch.size(), ownerId), new ArrayList<>(batch));
+        imported += batch.size();
+        batch.clear();
+    }
+
+    static PriorityLevel mapPriority(int icsPriority) {
+        if (icsPriority >= 1 && icsPriority <= 4) {
+            return PriorityLevel.HIGH;
+        }
+        if (icsPriority >= 6 && icsPriority <= 9) {
+            return PriorityLevel.LOW;
+        }
+        return PriorityLevel.MEDIUM;
+    }
+
+    private static boolean isDate(String params, String value) {
+        return "DATE".equalsIgnoreCase(param(params, "VALUE")) || value.trim().length() == 8;
+    }
+
+    private LocalDateTime parseTime(String params, String value) {
+        String v = value.trim();
+        if (v.length() == 8) {
+            return LocalDate.parse(v, DATE).atStartOfDay();
+        }
+        if (v.endsWith("Z") || v.endsWith("z")) {
+            LocalDateTime utc = LocalDateTime.parse(v.substring(0, v.length() - 1), DATE_TIME);
+            return utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(zone).toLocalDateTime();
+        }
+        LocalDateTime local = LocalDateTime.parse(v, DATE_TIME);
+        String tzid = param(params, "TZID");
+        if (tzid == null) {
+            return local;
+        }
+        ZoneId source;
+        try {
+            source = ZoneId.of(tzid);
+        } catch (DateTimeException e) {
+            // A Windows or custom zone name: keep the wall-clock time
+            return local;
+        }
+        return local.atZone(source).withZoneSameInstant(zone).toLocalDateTime();
+    }
+
+    /**
+     * RFC 5545 durations, including weeks (P2W), which Duration.parse does not accept
+     */
+    static Duration parseDuration(String v) {
+        boolean negative = v.startsWith("-");
+        String body = v.startsWith("-") || v.startsWith("+") ? v.substring(1) : v;
+        Duration d;
+        if (body.endsWith("W")) {
+            d = Duration.ofDays(7L * Long.parseLong(body.substring(1, body.length() - 1)));
+        } else {
+            d = Duration.parse(body);
+        }
+        return negative ? d.negated() : d;
+    }
+
+    private String attendeeName(String params, String value) {
+        String cn = param(params, "CN");
+        String address = value.trim();
+        if (address.regionMatches(true, 0, "mailto:", 0, 7)) {
+            address = address.substring(7);
+        }
+        if (cn != null && dataStore.findUserByUsername(cn) != null) {
+            return cn;
+        }
+        int at = address.indexOf('@');
+        String local = at > 0 ? address.substring(0, at) : address;
+        User user = dataStore.findUserByUsername(local);
+        if (user != null) {
+            return user.getUsername();
+        }
+        return cn != null ? cn : address;
+    }
+
+    /**
+     * Value of a property parameter, without quotes, or null
+     */
+    private static String param(String params, String name) {
+        int i = 0;
+        while (i < params.length()) {
+            int eq = params.indexOf('=', i);
+            if (eq < 0) {
+                return null;
+            }
+            String key = params.substring(i, eq).trim();
+            int j = eq + 1;
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (j < params.length() && (quoted || params.charAt(j) != ';')) {
+                char c = params.charAt(j++);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else {
+                    value.append(c);
+                }
+            }
+            if (key.equalsIgnoreCase(name)) {
+                return value.toString();
+            }
+            i = j + 1;
+        }
+        return null;
+    }
+
+    /**
+     * TEXT value escapes: \\n, \\N, \\, \\; \\\\
+     */
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -10,15 +10,19 @@ import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import logging.Level;
+import logging.Logger;
 import model.DataStore;
 import model.Event;
 import model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 public class CalendarView extends VBox {
+    private static final Logger LOG = Logger.get(CalendarView.class);
 	
 	 // Class member variables
     private User currentUser ; // Currently logged in user
@@ -130,14 +134,12 @@ public class CalendarView extends VBox {
             selectedEventLabel.setText("No event selected");
             
             // -- Test information output --
-            System.out.println("------ Show My Events ------");
-            System.out.println("Selected date: " + selectedDate);
-            System.out.println("Current user ID: " + user.getUserId());
-            System.out.println("Found events: " + events.size());
-            for (Event ev : events) {
-                System.out.println("Event: " + ev.getTitle() + " " + ev.getStartTime());
+            if (LOG.isEnabled(Level.DEBUG)) {
+                LOG.debug("Show My Events: date={}, userId={}, found={}", selectedDate, user.getUserId(), events.size());
+                for (Event ev : events) {
+                    LOG.debug("Event: {} {}", ev.getTitle(), ev.getStartTime());
+                }
             }
-            System.out.println("----------------------------");
 
             // Clear and update list view, display detailed event information
             eventListView.getItems().clear();
@@ -210,8 +212,12 @@ public class CalendarView extends VBox {
                 "Are you sure you want to cancel the event: " + selectedEvent[0].getTitle() + "?");
                 
             if (confirmDelete) {
-                // Remove event
-                dataStore.removeEvent(currentUser.getUserId(), selectedEvent[0].getEventId());
+                // Remove event (only works for events the user created, not invitations)
+                boolean removed = dataStore.removeEvent(currentUser.getUserId(), selectedEvent[0].getEventId());
+                if (!removed) {
+                    showAlert("Error", "Only the organizer can cancel this event.");
+                    return;
+                }
                 
                 // Refresh view
                 showEventsBtn.fire(); // Trigger click event of show events button
@@ -240,6 +246,27 @@ public class CalendarView extends VBox {
                 // Use UserController to find user
                 User foundUser = dataStore.findUserByUsername(username);
                 
+                // No exact match: offer the closest usernames in case of a typo
+                if (foundUser == null) {
+                    List<User> similarUsers = dataStore.findSimilarUsers(username, 2, 5);
+                    if (!similarUsers.isEmpty()) {
+                        List<String> suggestions = new ArrayList<>();
+                        for (User similar : similarUsers) {
+                            suggestions.add(similar.getUsername());
+                        }
+                        ChoiceDialog<String> suggestionDialog = new ChoiceDialog<>(suggestions.get(0), suggestions);
+                        suggestionDialog.setTitle("Add Friend");
+                        suggestionDialog.setHeaderText("No user named " + username + ". Did you mean:");
+                        suggestionDialog.setContentText("Username:");
+                        Optional<String> choice = suggestionDialog.showAndWait();
+                        if (!choice.isPresent()) {
+                            return;
+                        }
+                        username = choice.get();
+                        foundUser = dataStore.findUserByUsername(username);
+                    }
+                }
+                
                 if (foundUser != null) {
                     // Confirm whether to add as friend
                     boolean confirm = showConfirmation("Add Friend", 
@@ -257,7 +284,7 @@ public class CalendarView extends VBox {
                             showAlert("Success", username + " has been added as your friend!");
                         } catch (Exception ex) {
                             // If exception occurs, possibly already a friend or other error
-                            System.out.println("Error adding friend: " + ex.getMessage());
+                            LOG.warn("Error adding friend: {}", ex.getMessage());
                             showAlert("Note", "Could not add " + username + " as a friend. They may already be your friend.");
                         }
                     }
@@ -13,20 +13,32 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
+import logging.Logger;
 import model.DataStore;
 import model.Event;
 import model.PriorityLevel;
 import model.User;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class EventFormView extends VBox {
+    private static final Logger LOG = Logger.get(EventFormView.class);
+
+    // Maximum number of users shown in the participant search results
+    private static final int MAX_SEARCH_RESULTS = 50;
+    // Number of free slots offered by "Find Free Time", and the latest end time they may have
+    private static final int SUGGESTED_SLOTS = 5;
+    private static final LocalTime LATEST_SUGGESTED_END = LocalTime.of(23, 45);
+
     private DataStore dataStore;
     private User currentUser;
     private List<User> selectedParticipants = new ArrayList<>();
@@ -99,6 +111,11 @@ public class EventFormView extends VBox {
         endHourBox.setValue("11");
         endMinuteBox.setValue("00");
 
+        // Suggest a time when the user and all selected participants are free
+        Button findFreeTimeBtn = new Button("Find Free Time");
+        findFreeTimeBtn.setStyle("-fx-background-color: #3498db; -fx-text-fill: white;");
+        findFreeTimeBtn.setOnAction(e -> suggestFreeTime());
+
         // Participant search and selection section
         VBox participantSection = createParticipantSection();
 
@@ -157,6 +174,9 @@ public class EventFormView extends VBox {
         formGrid.add(endTimeLabel, 0, row);
         formGrid.add(endTimeBox, 1, row);
         
+        row++;
+        formGrid.add(findFreeTimeBtn, 1, row);
+        
         row++;
         formGrid.add(new Label("Participants:"), 0, row);
         formGrid.add(participantSection, 1, row);
@@ -175,7 +195,7 @@ public class EventFormView extends VBox {
                 return;
             }
             
-            String eventId = UUID.randomUUID().toString();
+            String eventId = dataStore.newId();
             String title = titleField.getText();
             LocalDate date = datePicker.getValue();
             
@@ -230,9 +250,8 @@ public class EventFormView extends VBox {
             navController.popPane();
             
             // Print log information
-            System.out.println("Save Event => " + newEvent.getTitle() 
-                + ", startTime=" + newEvent.getStartTime() 
-                + ", userId=" + user.getUserId());
+            LOG.debug("Save Event => {}, startTime={}, userId={}",
+                newEvent.getTitle(), newEvent.getStartTime(), user.getUserId());
         });
 
         // Add all components to the main VBox layout
@@ -304,44 +323,36 @@ public class EventFormView extends VBox {
                 return;
             }
             
-            System.out.println("Searching for: " + searchText);
+            LOG.debug("Searching for: {}", searchText);
             
-            // Get all users from DataStore
-            List<User> allUsers = new ArrayList<>(dataStore.getUserMap().values());
-            System.out.println("Total users in system: " + allUsers.size());
+            // Ids to hide from results: already selected participants and the current user
+            Set<String> excludedIds = new HashSet<>();
+            for (User selected : selectedParticipants) {
+                excludedIds.add(selected.getUserId());
+            }
+            excludedIds.add(currentUser.getUserId());
             
-            // Filter users that match search criteria, case insensitive
-            List<User> filteredUsers = new ArrayList<>();
+            // Prefix lookup in the username radix tree; over-fetch by the number of excluded users
+            List<User> matches = dataStore.searchUsersByPrefix(searchText,
+                    MAX_SEARCH_RESULTS + excludedIds.size());
             
-            for (User user : allUsers) {
-                // Check if username contains search text
-                boolean matchesSearch = user.getUsername().toLowerCase().contains(searchText.toLowerCase());
-                
-                // Check if user is already in selected list
-                boolean alreadySelected = false;
-                for (User selected : selectedParticipants) {
-                    if (selected.getUserId().equals(user.getUserId())) {
-                        alreadySelected = true;
+            List<User> filteredUsers = new ArrayList<>();
+            for (User user : matches) {
+                if (!excludedIds.contains(user.getUserId())) {
+                    filteredUsers.add(user);
+                    if (filteredUsers.size() == MAX_SEARCH_RESULTS) {
                         break;
                     }
                 }
-                
-                // Check if user is current user
-                boolean isCurrentUser = user.getUserId().equals(currentUser.getUserId());
-                
-                // Only add users that meet all conditions
-                if (matchesSearch && !alreadySelected && !isCurrentUser) {
-                    filteredUsers.add(user);
-                }
             }
             
             // Clear and set new search results
             searchResultsView.getItems().clear();
             
             if (filteredUsers.isEmpty()) {
-                System.out.println("No matching users found");
+                LOG.debug("No matching users found");
             } else {
-                System.out.println("Found " + filteredUsers.size() + " matching users");
+                LOG.debug("Found {} matching users", filteredUsers.size());
                 searchResultsView.getItems().addAll(filteredUsers);
             }
         };
@@ -356,6 +367,9 @@ public class EventFormView extends VBox {
             }
         });
         
+        // Type-ahead: refresh results on every keystroke
+        searchField.textProperty().addListener((obs, oldText, newText) -> performSearch.run());
+        
         // Add user button event
         addBtn.setOnAction(e -> {
             User selectedUser = searchResultsView.getSelectionModel().getSelectedItem();
@@ -387,7 +401,7 @@ public class EventFormView extends VBox {
                 // If current search results include this user, add it back to search results
                 String searchText = searchField.getText().trim();
                 if (!searchText.isEmpty() && 
-                    selectedUser.getUsername().toLowerCase().contains(searchText.toLowerCase())) {
+                    selectedUser.getUsername().toLowerCase().startsWith(searchText.toLowerCase())) {
                     searchResultsView.getItems().add(selectedUser);
                 }
             }
@@ -482,28 +496,67 @@ public class EventFormView extends VBox {
         return minuteBox;
     }
     
+    /**
+     * Check whether the new event overlaps any existing event of the user.
+     * Uses the per-user interval tree, so events spanning midnight are also caught.
+     */
     private boolean checkTimeConflict(String userId, LocalDate date, LocalTime startTime, LocalTime endTime) {
-        List<Event> existingEvents = dataStore.getUserEventsByDay(userId, date);
-        
         LocalDateTime newStartDateTime = LocalDateTime.of(date, startTime);
         LocalDateTime newEndDateTime = LocalDateTime.of(date, endTime);
         
-        for (Event event : existingEvents) {
-            // check if new event is overlap with existing events
-            LocalDateTime existingStart = event.getStartTime();
-            LocalDateTime existingEnd = event.getEndTime();
-            
-
-            boolean overlaps = 
-                (newStartDateTime.isBefore(existingEnd) || newStartDateTime.isEqual(existingEnd)) && 
-                (newEndDateTime.isAfter(existingStart) || newEndDateTime.isEqual(existingStart));
-            
-            if (overlaps) {
-                return true;
-            }
+        return dataStore.hasTimeConflict(userId, newStartDateTime, newEndDateTime);
+    }
+    
+    /**
+     * Look up the first common free slots for the current user and the selected participants
+     * over the week starting at the picked date, and fill the form with the chosen one.
+     * The slot length is taken from the current start/end selection; only slots ending
+     * by LATEST_SUGGESTED_END on their start date are offered.
+     */
+    private void suggestFreeTime() {
+        LocalDate date = datePicker.getValue();
+        LocalTime startTime = LocalTime.of(
+            Integer.parseInt(startHourBox.getValue()),
+            Integer.parseInt(startMinuteBox.getValue())
+        );
+        LocalTime endTime = LocalTime.of(
+            Integer.parseInt(endHourBox.getValue()),
+            Integer.parseInt(endMinuteBox.getValue())
+        );
+        Duration length = Duration.between(startTime, endTime);
+        if (length.isNegative() || length.isZero()) {
+            length = Duration.ofHours(1);
+        }
+        
+        List<String> userIds = new ArrayList<>();
+        userIds.add(currentUser.getUserId());
+        for (User participant : selectedParticipants) {
+            userIds.add(participant.getUserId());
+        }
+        
+        // The form has a single date, so a slot must end on the day it starts
+        List<LocalDateTime> slots = dataStore.findCommonFreeSlots(userIds, date, date.plusDays(6), length,
+                LATEST_SUGGESTED_END, SUGGESTED_SLOTS);
+        if (slots.isEmpty()) {
+            showAlert(Alert.AlertType.INFORMATION, "No Free Time",
+                "No common free time found in the next 7 days.");
+            return;
         }
         
-        return false;
+        ChoiceDialog<LocalDateTime> dialog = new ChoiceDialog<>(slots.get(0), slots);
+        dialog.setTitle("Find Free Time");
+        dialog.setHeaderText("Everyone is free at:");
+        dialog.setContentText("Start time:");
+        Optional<LocalDateTime> choice = dialog.showAndWait();
+        if (choice.isPresent()) {
+            LocalDateTime start = choice.get();
+            LocalDateTime end = start.plus(length);
+            datePicker.setValue(start.toLocalDate());
+            startHourBox.setValue(String.format("%02d", start.getHour()));
+            startMinuteBox.setValue(String.format("%02d", start.getMinute()));
+            endHourBox.setValue(String.format("%02d", end.getHour()));
+            endMinuteBox.setValue(String.format("%02d", end.getMinute()));
+        }
     }
     
     /**
@@ -1,7 +1,6 @@
 package view;
 
 
-import java.util.UUID;
 
 
 import controller.MainController;
@@ -20,6 +19,7 @@ import javafx.scene.text.Font;
 import javafx.animation.PauseTransition;
 import javafx.util.Duration;
 import model.DataStore;
+import model.PasswordHasher;
 import model.User;
 import javafx.geometry.HPos;
 
@@ -108,15 +108,15 @@ public class LoginView extends VBox {
             }
             
             // Check if user already exists
-            if (dataStore.findUserByUsername(username) != null) {
+            if (!dataStore.isUsernameAvailable(username)) {
                 // Show error dialog
                 showErrorAlert("Username Error", "Username already taken, please choose another");
                 return;
             }
             
             // Otherwise create User and add it to userMap
-            String newUserId = UUID.randomUUID().toString();
-            User newUser = new User(newUserId, username, password);
+            String newUserId = dataStore.newId();
+            User newUser = new User(newUserId, username, PasswordHasher.hash(password));
             dataStore.addUser(newUser); 
             
             messageLabel.setText("Registration successful!");
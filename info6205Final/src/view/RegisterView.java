@@ -1,6 +1,5 @@
 package view;
 
-import java.util.UUID;
 
 import controller.NavigationController;
 import controller.MainController;
@@ -14,6 +13,7 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import model.DataStore;
+import model.PasswordHasher;
 import model.User;
 
 public class RegisterView extends VBox {
@@ -61,14 +61,14 @@ public class RegisterView extends VBox {
             }
             
             // Check if username already exists
-            if (dataStore.findUserByUsername(username) != null) {
+            if (!dataStore.isUsernameAvailable(username)) {
                 messageLabel.setText("Username already taken, please choose another");
                 return;
             }
             
             // Otherwise create User and add to userMap
-            String newUserId = UUID.randomUUID().toString();
-            User newUser = new User(newUserId, username, password);
+            String newUserId = dataStore.newId();
+            User newUser = new User(newUserId, username, PasswordHasher.hash(password));
             dataStore.addUser(newUser); 
             
             messageLabel.setText("Registration successful!");